@@ -4,10 +4,16 @@ import org.hibernate.cfg.Configuration;
 import org.hibernate.tool.hbm2ddl.SchemaExport;
 
 import br.com.pm73.dao.CriadorDeSessao;
+import br.com.pm73.infra.ArmazenamentoDoBanco;
 
 public class CriaTabelas {
 
+	// CriaTabelas cached cria as tabelas em disco (CACHED) e CriaTabelas
+	// memory no heap; sem argumento vale o pm73.banco.tabelas do perfil
 	public static void main(String[] args) {
+		if(args.length > 0) {
+			System.setProperty(ArmazenamentoDoBanco.TABELAS, args[0]);
+		}
 		
 		Configuration cfg = new CriadorDeSessao().getConfig();
 		SchemaExport se = new SchemaExport(cfg);
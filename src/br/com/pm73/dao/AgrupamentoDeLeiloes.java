@@ -0,0 +1,36 @@
+package br.com.pm73.dao;
+
+import org.hibernate.type.BooleanType;
+import org.hibernate.type.IntegerType;
+import org.hibernate.type.Type;
+
+/**
+ * Por qual coluna de Leilao LeilaoDao.estatisticasPor separa os grupos. K
+ * e o tipo da chave de cada grupo: o id do dono, ou se os leiloes estao
+ * encerrados ou sao usados.
+ */
+public final class AgrupamentoDeLeiloes<K> {
+
+	public static final AgrupamentoDeLeiloes<Integer> DONO =
+			new AgrupamentoDeLeiloes<Integer>("dono_id", IntegerType.INSTANCE);
+	public static final AgrupamentoDeLeiloes<Boolean> ENCERRADO =
+			new AgrupamentoDeLeiloes<Boolean>("encerrado", BooleanType.INSTANCE);
+	public static final AgrupamentoDeLeiloes<Boolean> USADO =
+			new AgrupamentoDeLeiloes<Boolean>("usado", BooleanType.INSTANCE);
+
+	private final String coluna;
+	private final Type tipo;
+
+	private AgrupamentoDeLeiloes(String coluna, Type tipo) {
+		this.coluna = coluna;
+		this.tipo = tipo;
+	}
+
+	String getColuna() {
+		return coluna;
+	}
+
+	Type getTipo() {
+		return tipo;
+	}
+}
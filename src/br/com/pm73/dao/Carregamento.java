@@ -0,0 +1,26 @@
+package br.com.pm73.dao;
+
+/**
+ * O que uma consulta de leiloes ja traz junto, no mesmo SELECT, para que
+ * percorrer o resultado nao dispare uma consulta por leilao.
+ *
+ * Sem join, o dono e os lances sao carregados sob demanda em lotes
+ * (@BatchSize), ou seja, uma consulta a mais para cada 50 leiloes tocados.
+ */
+public enum Carregamento {
+
+	SO_LEILAO(""),
+	COM_DONO(" left join fetch l.dono"),
+	COM_LANCES(" left join fetch l.lances"),
+	COMPLETO(" left join fetch l.dono left join fetch l.lances lance left join fetch lance.usuario");
+
+	private final String joins;
+
+	private Carregamento(String joins) {
+		this.joins = joins;
+	}
+
+	String getJoins() {
+		return joins;
+	}
+}
@@ -3,38 +3,130 @@ package br.com.pm73.dao;
 import br.com.pm73.dominio.Lance;
 import br.com.pm73.dominio.Leilao;
 import br.com.pm73.dominio.Usuario;
+import br.com.pm73.infra.ConfiguracaoDoBanco;
+import br.com.pm73.infra.ContadorDeEntidades;
+import br.com.pm73.infra.EstatisticasDoCache;
+import br.com.pm73.infra.EstatisticasDoPool;
+import br.com.pm73.infra.Instrumentacao;
+import br.com.pm73.infra.LogDeConsultasLentas;
+import br.com.pm73.infra.PoolDeConexoes;
+import org.hibernate.FlushMode;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.AnnotationConfiguration;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.service.jdbc.connections.spi.ConnectionProvider;
 
 @SuppressWarnings("deprecation")
 public class CriadorDeSessao {
 
 	private static AnnotationConfiguration config;
-	private static SessionFactory sf;
-	
-	public Session getSession() {
+	private static volatile SessionFactory sf;
+	private static boolean ganchoRegistrado;
+
+	/**
+	 * Constroi a SessionFactory (e o pool de conexoes) uma unica vez.
+	 * Pode ser chamado na subida da aplicacao; getSession() chama sozinho
+	 * caso ninguem tenha chamado antes. A SessionFactory e encerrada
+	 * sozinha quando a JVM termina.
+	 */
+	public static synchronized void inicia() {
 		if(sf == null) {
-			sf = getConfig().buildSessionFactory();
+			sf = new CriadorDeSessao().getConfig().buildSessionFactory();
+			Instrumentacao.registraNoJmx(sf);
+			if(!ganchoRegistrado) {
+				// sem o encerra() o banco nao recebe o SHUTDOWN e os ultimos commits se perdem
+				Runtime.getRuntime().addShutdownHook(new Thread("encerra-sessionfactory") {
+					@Override
+					public void run() {
+						encerra();
+					}
+				});
+				ganchoRegistrado = true;
+			}
+		}
+	}
+
+	/**
+	 * Fecha a SessionFactory e devolve todas as conexoes do pool.
+	 * Um getSession() posterior sobe tudo de novo.
+	 */
+	public static synchronized void encerra() {
+		if(sf != null) {
+			sf.close();
+			sf = null;
 		}
-		
-		return sf.openSession();
+	}
+
+	public static EstatisticasDoPool getEstatisticasDoPool() {
+		ConnectionProvider provider = ((SessionFactoryImplementor) iniciada()).getServiceRegistry()
+				.getService(ConnectionProvider.class);
+		return provider.unwrap(PoolDeConexoes.class).getEstatisticas();
+	}
+
+	/**
+	 * Os statements que passaram de pm73.consultas_lentas.limite_ms, com os
+	 * planos; o limite pode ser mudado com a aplicacao no ar.
+	 */
+	public static LogDeConsultasLentas getConsultasLentas() {
+		ConnectionProvider provider = ((SessionFactoryImplementor) iniciada()).getServiceRegistry()
+				.getService(ConnectionProvider.class);
+		return provider.unwrap(PoolDeConexoes.class).getConsultasLentas();
+	}
+
+	/**
+	 * Acertos e falhas do cache de segundo nivel e do cache de consultas.
+	 * Depende de hibernate.generate_statistics, ligado em todos os perfis.
+	 */
+	public static EstatisticasDoCache getEstatisticasDoCache() {
+		return new EstatisticasDoCache(iniciada().getStatistics());
+	}
+
+	private static SessionFactory iniciada() {
+		SessionFactory fabrica = sf;
+		if(fabrica == null) {
+			throw new IllegalStateException("A SessionFactory ainda nao foi iniciada");
+		}
+		return fabrica;
+	}
+
+	public Session getSession() {
+		SessionFactory fabrica = sf;
+		if(fabrica == null) {
+			inicia();
+			fabrica = sf;
+		}
+
+		return fabrica.openSession();
+	}
+
+	/**
+	 * Sessao para telas que so leem. Tudo o que ela carrega e somente
+	 * leitura, entao o Hibernate nao guarda a copia do estado de cada
+	 * entidade nem a verifica no flush; e o flush e manual, entao as
+	 * consultas nao varrem a sessao procurando alteracoes antes de rodar.
+	 * Alteracoes feitas nos objetos carregados nunca vao para o banco.
+	 * Os DAOs funcionam com ela do mesmo jeito.
+	 */
+	public Session getSessionSomenteLeitura() {
+		Session session = getSession();
+		session.setDefaultReadOnly(true);
+		session.setFlushMode(FlushMode.MANUAL);
+		return session;
 	}
 
 	public Configuration getConfig() {
-		if(config == null) {
-			config = new AnnotationConfiguration()
-		    .addAnnotatedClass(Lance.class)
-		    .addAnnotatedClass(Leilao.class)
-		    .addAnnotatedClass(Usuario.class)
-			.setProperty("hibernate.connection.driver_class", "org.hsqldb.jdbcDriver")
-			.setProperty("hibernate.connection.url", "jdbc:hsqldb:caelum.db;shutdown=true")
-			.setProperty("hibernate.dialect", "org.hibernate.dialect.HSQLDialect")
-			.setProperty("hibernate.connection.username", "sa")
-			.setProperty("hibernate.connection.password", "")
-			.setProperty("hibernate.show_sql", "true");
+		synchronized (CriadorDeSessao.class) {
+			if(config == null) {
+				config = new AnnotationConfiguration()
+			    .addAnnotatedClass(Lance.class)
+			    .addAnnotatedClass(Leilao.class)
+			    .addAnnotatedClass(Usuario.class)
+				.addProperties(ConfiguracaoDoBanco.doPerfilAtivo().getPropriedades());
+				config.setInterceptor(new ContadorDeEntidades());
+			}
+			return config;
 		}
-		return config;
 	}
 }
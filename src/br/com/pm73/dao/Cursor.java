@@ -0,0 +1,42 @@
+package br.com.pm73.dao;
+
+/**
+ * Posicao do ultimo item de uma Pagina: o valor da coluna de ordenacao e o
+ * id, que desempata. A proxima pagina comeca logo depois dele, sem OFFSET.
+ */
+public class Cursor<K> {
+
+	private final K chave;
+	private final int id;
+
+	public Cursor(K chave, int id) {
+		this.chave = chave;
+		this.id = id;
+	}
+
+	public K getChave() {
+		return chave;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof Cursor)) return false;
+		Cursor<?> outro = (Cursor<?>) obj;
+		return id == outro.id && (chave == null ? outro.chave == null : chave.equals(outro.chave));
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (chave == null ? 0 : chave.hashCode()) + id;
+	}
+
+	@Override
+	public String toString() {
+		return "Cursor[" + chave + ", " + id + "]";
+	}
+}
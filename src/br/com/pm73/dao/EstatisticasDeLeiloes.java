@@ -0,0 +1,111 @@
+package br.com.pm73.dao;
+
+import br.com.pm73.dominio.Dinheiro;
+
+/**
+ * Agregados dos leiloes de um FiltroDeLeiloes e dos lances dados neles,
+ * calculados pelo banco. Sem leiloes ou sem lances, contagens, valores e
+ * medias sao zero, nunca null.
+ */
+public class EstatisticasDeLeiloes {
+
+	private final long leiloes;
+	private final long encerrados;
+	private final long menorValorInicial;
+	private final long maiorValorInicial;
+	private final double valorInicialMedio;
+	private final long somaDosValoresIniciais;
+	private final long lances;
+	private final long menorLance;
+	private final long maiorLance;
+	private final double lanceMedio;
+	private final long somaDosLances;
+	private final long licitantes;
+
+	public EstatisticasDeLeiloes(long leiloes, long encerrados,
+			long menorValorInicial, long maiorValorInicial, double valorInicialMedio, long somaDosValoresIniciais,
+			long lances, long menorLance, long maiorLance, double lanceMedio, long somaDosLances,
+			long licitantes) {
+		this.leiloes = leiloes;
+		this.encerrados = encerrados;
+		this.menorValorInicial = menorValorInicial;
+		this.maiorValorInicial = maiorValorInicial;
+		this.valorInicialMedio = valorInicialMedio;
+		this.somaDosValoresIniciais = somaDosValoresIniciais;
+		this.lances = lances;
+		this.menorLance = menorLance;
+		this.maiorLance = maiorLance;
+		this.lanceMedio = lanceMedio;
+		this.somaDosLances = somaDosLances;
+		this.licitantes = licitantes;
+	}
+
+	public long getLeiloes() {
+		return leiloes;
+	}
+
+	public long getAbertos() {
+		return leiloes - encerrados;
+	}
+
+	public long getEncerrados() {
+		return encerrados;
+	}
+
+	public Dinheiro getMenorValorInicial() {
+		return Dinheiro.emCentavos(menorValorInicial);
+	}
+
+	public Dinheiro getMaiorValorInicial() {
+		return Dinheiro.emCentavos(maiorValorInicial);
+	}
+
+	/** Arredondado para o centavo. */
+	public Dinheiro getValorInicialMedio() {
+		return Dinheiro.emCentavos(Math.round(valorInicialMedio));
+	}
+
+	public Dinheiro getSomaDosValoresIniciais() {
+		return Dinheiro.emCentavos(somaDosValoresIniciais);
+	}
+
+	public long getLances() {
+		return lances;
+	}
+
+	public Dinheiro getMenorLance() {
+		return Dinheiro.emCentavos(menorLance);
+	}
+
+	public Dinheiro getMaiorLance() {
+		return Dinheiro.emCentavos(maiorLance);
+	}
+
+	/** Arredondado para o centavo. */
+	public Dinheiro getLanceMedio() {
+		return Dinheiro.emCentavos(Math.round(lanceMedio));
+	}
+
+	public Dinheiro getSomaDosLances() {
+		return Dinheiro.emCentavos(somaDosLances);
+	}
+
+	/** Usuarios distintos que deram lance. */
+	public long getLicitantes() {
+		return licitantes;
+	}
+
+	public double getLancesPorLeilao() {
+		return leiloes == 0 ? 0.0 : lances / (double) leiloes;
+	}
+
+	public double getLancesPorLicitante() {
+		return licitantes == 0 ? 0.0 : lances / (double) licitantes;
+	}
+
+	@Override
+	public String toString() {
+		return leiloes + " leiloes (" + encerrados + " encerrados), " + lances + " lances de "
+				+ licitantes + " licitantes, maior lance " + getMaiorLance();
+	}
+}
@@ -0,0 +1,60 @@
+package br.com.pm73.dao;
+
+import java.time.Instant;
+
+import br.com.pm73.dominio.Usuario;
+
+/**
+ * Quais leiloes entram em LeilaoDao.estatisticas e estatisticasPor. Cada
+ * criterio e opcional; um filtro vazio considera todos os leiloes.
+ */
+public class FiltroDeLeiloes {
+
+	private Instant inicio;
+	private Instant fim;
+	private Usuario dono;
+	private Boolean usado;
+	private Boolean encerrado;
+
+	/** Abertos entre inicio e fim, inclusive. */
+	public FiltroDeLeiloes abertosEntre(Instant inicio, Instant fim) {
+		this.inicio = inicio;
+		this.fim = fim;
+		return this;
+	}
+
+	public FiltroDeLeiloes doDono(Usuario dono) {
+		this.dono = dono;
+		return this;
+	}
+
+	public FiltroDeLeiloes usados(boolean usado) {
+		this.usado = usado;
+		return this;
+	}
+
+	public FiltroDeLeiloes encerrados(boolean encerrado) {
+		this.encerrado = encerrado;
+		return this;
+	}
+
+	public Instant getInicio() {
+		return inicio;
+	}
+
+	public Instant getFim() {
+		return fim;
+	}
+
+	public Usuario getDono() {
+		return dono;
+	}
+
+	public Boolean getUsado() {
+		return usado;
+	}
+
+	public Boolean getEncerrado() {
+		return encerrado;
+	}
+}
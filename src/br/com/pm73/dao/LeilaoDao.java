@@ -1,15 +1,45 @@
 package br.com.pm73.dao;
 
-import java.util.Calendar;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import br.com.pm73.dominio.Dinheiro;
 import br.com.pm73.dominio.Lance;
 import br.com.pm73.dominio.Leilao;
 import br.com.pm73.dominio.Usuario;
+import org.hibernate.Hibernate;
+import org.hibernate.Query;
+import org.hibernate.SQLQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
+import org.hibernate.StaleObjectStateException;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.type.DoubleType;
+import org.hibernate.type.LongType;
 
 public class LeilaoDao {
 
+	private static final int TAMANHO_PADRAO_DO_LOTE = 50;
+	private static final int TAMANHO_PADRAO_DO_FETCH = 100;
+	private static final int TAMANHO_PADRAO_DO_EXPURGO = 10000;
+	private static final long SETE_DIAS_EM_MILLIS = 7L * 24 * 60 * 60 * 1000;
+	private static final String AGREGADOS_DOS_LEILOES = "count(*) as leiloes, " +
+			"coalesce(sum(case when l.encerrado then 1 else 0 end), 0) as encerrados, " +
+			"coalesce(min(l.valorInicial), 0) as menorValorInicial, " +
+			"coalesce(max(l.valorInicial), 0) as maiorValorInicial, " +
+			"coalesce(avg(cast(l.valorInicial as double)), 0) as valorInicialMedio, " +
+			"coalesce(sum(l.valorInicial), 0) as somaDosValoresIniciais ";
+	private static final String AGREGADOS_DOS_LANCES = "count(*) as lances, " +
+			"coalesce(min(lance.valor), 0) as menorLance, " +
+			"coalesce(max(lance.valor), 0) as maiorLance, " +
+			"coalesce(avg(cast(lance.valor as double)), 0) as lanceMedio, " +
+			"coalesce(sum(lance.valor), 0) as somaDosLances, " +
+			"count(distinct lance.usuario_id) as licitantes ";
+
 	private final Session session;
 
 	public LeilaoDao(Session session) {
@@ -23,7 +53,48 @@ public class LeilaoDao {
 			session.save(lance);
 		}
 	}
-	
+
+	/**
+	 * Insere muitos leiloes (e seus lances) usando o batch do JDBC.
+	 * A cada hibernate.jdbc.batch_size linhas a sessao e descarregada e
+	 * limpa, entao os objetos passados (e qualquer outro que estivesse na
+	 * sessao) saem dela desanexados. Os donos e os usuarios dos lances
+	 * precisam ja estar salvos.
+	 */
+	public ResultadoDaImportacao salvarTodos(Collection<Leilao> leiloes) {
+		int tamanhoDoLote = tamanhoDoLote();
+		long inicio = System.nanoTime();
+		long linhas = 0;
+		int pendentes = 0;
+
+		for(Leilao leilao : leiloes) {
+			session.save(leilao);
+			for(Lance lance : leilao.getLances()) {
+				session.save(lance);
+			}
+
+			int inseridas = 1 + leilao.getLances().size();
+			linhas += inseridas;
+			pendentes += inseridas;
+
+			if(pendentes >= tamanhoDoLote) {
+				session.flush();
+				session.clear();
+				pendentes = 0;
+			}
+		}
+		session.flush();
+		session.clear();
+
+		return new ResultadoDaImportacao(leiloes.size(), linhas, System.nanoTime() - inicio);
+	}
+
+	private int tamanhoDoLote() {
+		int configurado = ((SessionFactoryImplementor) session.getSessionFactory())
+				.getSettings().getJdbcBatchSize();
+		return configurado > 0 ? configurado : TAMANHO_PADRAO_DO_LOTE;
+	}
+
 	public Leilao porId(int id) {
 		return (Leilao) session.get(Leilao.class, id);
 	}
@@ -31,70 +102,653 @@ public class LeilaoDao {
 	@SuppressWarnings("unchecked")
 	public List<Leilao> novos() {
 		return session.createQuery("from Leilao l where usado = false")
+				.setCacheable(true)
 				.list();
 	}
 	
 	@SuppressWarnings("unchecked")
 	public List<Leilao> antigos() {
-		Calendar seteDiasAtras = Calendar.getInstance();
-		seteDiasAtras.add(Calendar.DAY_OF_MONTH, -7);
-		
-		return session.createQuery("from Leilao l where dataAbertura < :data")
-				.setParameter("data", seteDiasAtras)
+		return session.createQuery("from Leilao l where dataAbertura <= :data")
+				.setParameter("data", seteDiasAtras())
 				.list();
 	}
 	
 	@SuppressWarnings("unchecked")
-	public List<Leilao> porPeriodo(Calendar inicio, Calendar fim) {
+	public List<Leilao> porPeriodo(Instant inicio, Instant fim) {
 		return session.createQuery("from Leilao l where l.dataAbertura " +
 				"between :inicio and :fim and l.encerrado = false")
-				.setParameter("inicio", inicio)
-				.setParameter("fim", fim)
+				.setParameter("inicio", inicio.toEpochMilli())
+				.setParameter("fim", fim.toEpochMilli())
 				.list();
 	}
 	
 	@SuppressWarnings("unchecked")
-	public List<Leilao> disputadosEntre(double inicio, double fim) {
+	public List<Leilao> disputadosEntre(Dinheiro inicio, Dinheiro fim) {
 		return session.createQuery("from Leilao l where l.valorInicial " +
 				"between :inicio and :fim and l.encerrado = false " +
-				"and size(l.lances) > 3")
-				.setParameter("inicio", inicio)
-				.setParameter("fim", fim)
+				"and l.quantidadeDeLances > 3")
+				.setParameter("inicio", inicio.getCentavos())
+				.setParameter("fim", fim.getCentavos())
 				.list();
 	}
 	
+	/**
+	 * Recalcula o contador de lances, o maior lance e o vencedor de todos os
+	 * leiloes a partir da tabela Lance. So e necessario quando lances foram
+	 * gravados por fora do Leilao.adicionaLance, por exemplo numa carga
+	 * direta no banco.
+	 */
+	public int recalculaQuantidadeDeLances() {
+		// em SQL porque o HQL gera a subconsulta sem qualificar o id do Leilao
+		return session.createSQLQuery("update Leilao set " +
+				"quantidadeDeLances = (select count(*) from Lance where Lance.leilao_id = Leilao.id), " +
+				"maiorLance = coalesce((select max(valor) from Lance where Lance.leilao_id = Leilao.id), 0), " +
+				"vencedor_id = (select usuario_id from Lance where Lance.leilao_id = Leilao.id " +
+				"order by valor desc, id limit 1)")
+				.addSynchronizedEntityClass(Leilao.class)
+				.executeUpdate();
+	}
+
+	/**
+	 * Leiloes abertos com os maiores lances, do maior para o menor, sem
+	 * tocar na tabela Lance.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Leilao> maisValorizados(int limite) {
+		return session.createQuery("from Leilao l where l.encerrado = false and l.quantidadeDeLances > 0 " +
+				"order by l.maiorLance desc, l.id")
+				.setMaxResults(limite)
+				.list();
+	}
+
+	/**
+	 * Leiloes abertos em que o usuario esta, agora, com o maior lance.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Leilao> vencendoPor(Usuario usuario) {
+		return session.createQuery("from Leilao l where l.vencedor = :usuario " +
+				"and l.encerrado = false order by l.maiorLance desc, l.id")
+				.setParameter("usuario", usuario)
+				.list();
+	}
+
+	/**
+	 * Contagens, minimos, maximos, medias e somas dos leiloes que passam
+	 * pelo filtro e dos lances dados neles, num unico comando. Cada lado e
+	 * agregado numa tabela derivada, para que o join com Lance nao repita
+	 * os leiloes nas somas.
+	 */
+	public EstatisticasDeLeiloes estatisticas(FiltroDeLeiloes filtro) {
+		String condicoes = condicoes(filtro);
+		SQLQuery query = session.createSQLQuery("select * from " +
+				"(select " + AGREGADOS_DOS_LEILOES + "from Leilao l" + condicoes + ") leiloes, " +
+				"(select " + AGREGADOS_DOS_LANCES + "from Lance lance join Leilao l on lance.leilao_id = l.id" +
+				condicoes + ") lances");
+		escalaresDasEstatisticas(query);
+		preenche(query, filtro);
+
+		return estatisticas((Object[]) query.uniqueResult(), 0);
+	}
+
+	/**
+	 * As mesmas estatisticas de estatisticas(filtro), uma para cada valor da
+	 * coluna do agrupamento, tambem num unico comando e na ordem da chave.
+	 * So aparecem os grupos que tem leiloes no filtro; um grupo sem lances
+	 * vem com os agregados dos lances zerados.
+	 */
+	public <K> Map<K, EstatisticasDeLeiloes> estatisticasPor(AgrupamentoDeLeiloes<K> agrupamento,
+			FiltroDeLeiloes filtro) {
+		String condicoes = condicoes(filtro);
+		String grupo = "l." + agrupamento.getColuna();
+		SQLQuery query = session.createSQLQuery("select leiloes.*, " +
+				"coalesce(lances.lances, 0) as lances, " +
+				"coalesce(lances.menorLance, 0) as menorLance, " +
+				"coalesce(lances.maiorLance, 0) as maiorLance, " +
+				"coalesce(lances.lanceMedio, 0) as lanceMedio, " +
+				"coalesce(lances.somaDosLances, 0) as somaDosLances, " +
+				"coalesce(lances.licitantes, 0) as licitantes from " +
+				"(select " + grupo + " as grupo, " + AGREGADOS_DOS_LEILOES + "from Leilao l" + condicoes +
+				" group by " + grupo + ") leiloes left join " +
+				"(select " + grupo + " as grupo, " + AGREGADOS_DOS_LANCES +
+				"from Lance lance join Leilao l on lance.leilao_id = l.id" + condicoes +
+				" group by " + grupo + ") lances on lances.grupo = leiloes.grupo " +
+				"order by leiloes.grupo");
+		query.addScalar("grupo", agrupamento.getTipo());
+		escalaresDasEstatisticas(query);
+		preenche(query, filtro);
+
+		Map<K, EstatisticasDeLeiloes> porGrupo = new LinkedHashMap<K, EstatisticasDeLeiloes>();
+		for(Object linha : query.list()) {
+			Object[] colunas = (Object[]) linha;
+			@SuppressWarnings("unchecked")
+			K chave = (K) colunas[0];
+			porGrupo.put(chave, estatisticas(colunas, 1));
+		}
+		return porGrupo;
+	}
+
+	private static void escalaresDasEstatisticas(SQLQuery query) {
+		query.addScalar("leiloes", LongType.INSTANCE)
+			.addScalar("encerrados", LongType.INSTANCE)
+			.addScalar("menorValorInicial", LongType.INSTANCE)
+			.addScalar("maiorValorInicial", LongType.INSTANCE)
+			.addScalar("valorInicialMedio", DoubleType.INSTANCE)
+			.addScalar("somaDosValoresIniciais", LongType.INSTANCE)
+			.addScalar("lances", LongType.INSTANCE)
+			.addScalar("menorLance", LongType.INSTANCE)
+			.addScalar("maiorLance", LongType.INSTANCE)
+			.addScalar("lanceMedio", DoubleType.INSTANCE)
+			.addScalar("somaDosLances", LongType.INSTANCE)
+			.addScalar("licitantes", LongType.INSTANCE)
+			.addSynchronizedEntityClass(Leilao.class)
+			.addSynchronizedEntityClass(Lance.class);
+	}
+
+	private static EstatisticasDeLeiloes estatisticas(Object[] linha, int i) {
+		return new EstatisticasDeLeiloes((Long) linha[i], (Long) linha[i + 1],
+				(Long) linha[i + 2], (Long) linha[i + 3], (Double) linha[i + 4], (Long) linha[i + 5],
+				(Long) linha[i + 6], (Long) linha[i + 7], (Long) linha[i + 8], (Double) linha[i + 9],
+				(Long) linha[i + 10], (Long) linha[i + 11]);
+	}
+
+	private static String condicoes(FiltroDeLeiloes filtro) {
+		StringBuilder condicoes = new StringBuilder(" where 1 = 1");
+		if(filtro.getInicio() != null) condicoes.append(" and l.dataAbertura >= :inicio");
+		if(filtro.getFim() != null) condicoes.append(" and l.dataAbertura <= :fim");
+		if(filtro.getDono() != null) condicoes.append(" and l.dono_id = :dono");
+		if(filtro.getUsado() != null) condicoes.append(" and l.usado = :usado");
+		if(filtro.getEncerrado() != null) condicoes.append(" and l.encerrado = :encerrado");
+		return condicoes.toString();
+	}
+
+	private static void preenche(Query query, FiltroDeLeiloes filtro) {
+		if(filtro.getInicio() != null) query.setParameter("inicio", filtro.getInicio().toEpochMilli());
+		if(filtro.getFim() != null) query.setParameter("fim", filtro.getFim().toEpochMilli());
+		if(filtro.getDono() != null) query.setParameter("dono", filtro.getDono().getId());
+		if(filtro.getUsado() != null) query.setParameter("usado", filtro.getUsado());
+		if(filtro.getEncerrado() != null) query.setParameter("encerrado", filtro.getEncerrado());
+	}
+
 	public Long total() {
 		return (Long) session.createQuery("select count(l) from Leilao l where l.encerrado = false")
+				.setCacheable(true)
 				.uniqueResult();
 	}
 	
+	/**
+	 * Copia os dados do proprio leilao (nome, valor inicial, dono, data de
+	 * abertura, usado e encerrado) para a instancia da sessao. Como Leilao
+	 * tem @DynamicUpdate, o flush so grava as colunas que mudaram e os
+	 * lances nao sao tocados.
+	 *
+	 * Um leilao que nunca foi salvo, ou destacado com lances novos (dados
+	 * com Leilao.adicionaLance fora da sessao), vai pelo merge: so ele grava
+	 * os lances em cascata junto com a quantidade de lances, o maior lance e
+	 * o vencedor que o adicionaLance mantem.
+	 */
 	public void atualiza(Leilao leilao) {
-		session.merge(leilao);
+		if(session.contains(leilao)) return;
+		if(leilao.getId() == 0 || temLancesNovos(leilao)) {
+			session.merge(leilao);
+			return;
+		}
+
+		Leilao gerenciado = gerenciado(leilao);
+		gerenciado.setNome(leilao.getNome());
+		gerenciado.setValorInicial(leilao.getValorInicial());
+		gerenciado.setDono(leilao.getDono());
+		gerenciado.setDataAbertura(leilao.getDataAbertura());
+		gerenciado.setUsado(leilao.isUsado());
+		if(leilao.isEncerrado()) gerenciado.encerra();
+	}
+
+	/**
+	 * Encerra o leilao. Com ele ja na sessao, o flush dispara um unico
+	 * UPDATE de encerrado e versao; destacado, um unico UPDATE versionado e
+	 * executado na hora, sem buscar o leilao antes.
+	 */
+	public void encerra(Leilao leilao) {
+		if(!session.contains(leilao)) {
+			atualizaDestacado(leilao, "encerrado = true", null, null);
+		}
+		leilao.encerra();
+	}
+
+	public void renomeia(Leilao leilao, String nome) {
+		if(!session.contains(leilao)) {
+			atualizaDestacado(leilao, "nome = :valor", "valor", nome);
+		}
+		leilao.setNome(nome);
+	}
+
+	public void alteraValorInicial(Leilao leilao, Dinheiro valorInicial) {
+		if(!session.contains(leilao)) {
+			atualizaDestacado(leilao, "valorInicial = :valor", "valor", valorInicial.getCentavos());
+		}
+		leilao.setValorInicial(valorInicial);
+	}
+
+	/**
+	 * UPDATE de uma coluna de um leilao destacado, condicionado a versao que
+	 * ele carrega; nenhuma linha alterada quer dizer que outro gravou antes,
+	 * e vira StaleObjectStateException, como no merge. A versao do objeto
+	 * acompanha a do banco, entao ele pode ser alterado de novo. Como todo
+	 * UPDATE em HQL, tira os leiloes do cache de segundo nivel.
+	 */
+	private void atualizaDestacado(Leilao leilao, String atribuicao, String parametro, Object valor) {
+		Query update = session.createQuery("update versioned Leilao set " + atribuicao +
+				" where id = :id and versao = :versao")
+				.setParameter("id", leilao.getId())
+				.setParameter("versao", leilao.getVersao());
+		if(parametro != null) update.setParameter(parametro, valor);
+
+		if(update.executeUpdate() == 0) {
+			throw new StaleObjectStateException(Leilao.class.getName(), leilao.getId());
+		}
+		session.getSessionFactory().getClassMetadata(Leilao.class)
+				.setPropertyValue(leilao, "versao", leilao.getVersao() + 1);
+	}
+
+	// uma colecao ainda nao carregada nao pode ter recebido lances fora da sessao; a
+	// colecao mapeada vem pelo metadata porque getLances() a embrulha somente para leitura
+	private boolean temLancesNovos(Leilao leilao) {
+		Object lances = session.getSessionFactory().getClassMetadata(Leilao.class)
+				.getPropertyValue(leilao, "lances");
+		if(lances == null || !Hibernate.isInitialized(lances)) return false;
+		for(Lance lance : leilao.getLances()) {
+			if(lance.getId() == 0) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * A instancia da sessao para o leilao. Um leilao destacado e buscado por
+	 * id (do cache de segundo nivel quando estiver la) e precisa estar na
+	 * mesma versao, senao StaleObjectStateException, como faria o merge.
+	 */
+	private Leilao gerenciado(Leilao leilao) {
+		if(session.contains(leilao)) return leilao;
+
+		Leilao gerenciado = porId(leilao.getId());
+		if(gerenciado == null || gerenciado.getVersao() != leilao.getVersao()) {
+			throw new StaleObjectStateException(Leilao.class.getName(), leilao.getId());
+		}
+		return gerenciado;
 	}
 	
 	public void deleta(Leilao leilao) {
 		session.delete(leilao);
 	}
 	
+	/**
+	 * Apaga, na transacao do chamador, todos os leiloes encerrados e seus
+	 * lances. O delete em massa nao passa pelo cascade de lances, entao os
+	 * lances sao apagados antes, tambem em massa. Para muitos leiloes,
+	 * prefira expurgaEncerrados.
+	 */
 	public void deletaEncerrados() {
+		session
+			.createQuery("delete from Lance lance where lance.leilao.id in " +
+					"(select l.id from Leilao l where l.encerrado = true)")
+			.executeUpdate();
 		session
 			.createQuery("delete from Leilao l where l.encerrado = true")
 			.executeUpdate();
 	}
+
+	public ResultadoDoExpurgo expurgaEncerrados() {
+		return expurgaEncerrados(TAMANHO_PADRAO_DO_EXPURGO, null);
+	}
+
+	/**
+	 * Apaga os leiloes encerrados e seus lances em lotes de ate
+	 * tamanhoDoLote leiloes, cada lote na sua propria transacao, para nao
+	 * segurar os locks do HSQLDB durante o expurgo inteiro.
+	 *
+	 * Como confirma cada lote, recusa rodar com uma transacao ja aberta na
+	 * sessao ou com alteracoes ainda nao gravadas, que seriam confirmadas
+	 * junto com o primeiro lote. A sessao e limpa a cada lote. O progresso,
+	 * se informado, recebe o acumulado depois de cada lote confirmado.
+	 *
+	 * @throws IllegalArgumentException se tamanhoDoLote nao for positivo
+	 * @throws IllegalStateException se a sessao ja estiver numa transacao ou
+	 *         tiver alteracoes pendentes
+	 */
+	@SuppressWarnings("unchecked")
+	public ResultadoDoExpurgo expurgaEncerrados(int tamanhoDoLote, Processador<ResultadoDoExpurgo> progresso) {
+		if(tamanhoDoLote < 1) {
+			throw new IllegalArgumentException("O tamanho do lote deve ser positivo: " + tamanhoDoLote);
+		}
+		if(session.getTransaction().isActive()) {
+			throw new IllegalStateException("O expurgo confirma um lote por vez; " +
+					"chame-o fora de uma transacao");
+		}
+		if(session.isDirty()) {
+			throw new IllegalStateException("O expurgo confirmaria as alteracoes pendentes da sessao " +
+					"com o primeiro lote; grave-as ou descarte-as antes");
+		}
+		long inicio = System.nanoTime();
+		int lotes = 0;
+		long leiloes = 0;
+		long lances = 0;
+
+		List<Integer> ids;
+		do {
+			session.beginTransaction();
+			try {
+				ids = session.createQuery("select l.id from Leilao l " +
+										  "where l.encerrado = true order by l.id")
+						.setMaxResults(tamanhoDoLote)
+						.list();
+				if(!ids.isEmpty()) {
+					lances += session
+						.createQuery("delete from Lance lance where lance.leilao.id in (:ids)")
+						.setParameterList("ids", ids)
+						.executeUpdate();
+					leiloes += session
+						.createQuery("delete from Leilao l where l.id in (:ids)")
+						.setParameterList("ids", ids)
+						.executeUpdate();
+				}
+				session.getTransaction().commit();
+			} finally {
+				if(session.getTransaction().isActive()) {
+					session.getTransaction().rollback();
+				}
+			}
+			session.clear();
+
+			if(!ids.isEmpty()) {
+				lotes++;
+				if(progresso != null) {
+					progresso.processa(new ResultadoDoExpurgo(lotes, leiloes, lances, System.nanoTime() - inicio));
+				}
+			}
+		} while(ids.size() == tamanhoDoLote);
+
+		return new ResultadoDoExpurgo(lotes, leiloes, lances, System.nanoTime() - inicio);
+	}
 	
+	/**
+	 * Leiloes em que o usuario deu lance, cada um uma unica vez, mesmo que
+	 * ele tenha dado varios lances no mesmo leilao.
+	 */
 	@SuppressWarnings("unchecked")
 	public List<Leilao> listaLeiloesDoUsuario(Usuario usuario) {
-		return session.createQuery("select lance.leilao " +
-								   "from Lance lance " +
-								   "where lance.usuario = :usuario")
+		return session.createQuery("from Leilao l " +
+								   "where l.id in (select lance.leilao.id from Lance lance " +
+								   "where lance.usuario = :usuario) " +
+								   "order by l.id")
+				.setParameter("usuario", usuario).list();
+	}
+
+	/**
+	 * Mesmos leiloes de listaLeiloesDoUsuario, mas so com id, nome,
+	 * valorInicial e encerrado, sem carregar entidades na sessao.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<LeilaoResumido> resumoDosLeiloesDoUsuario(Usuario usuario) {
+		return session.createQuery("select new br.com.pm73.dao.LeilaoResumido" +
+								   "(l.id, l.nome, l.valorInicial, l.encerrado) " +
+								   "from Leilao l " +
+								   "where l.id in (select lance.leilao.id from Lance lance " +
+								   "where lance.usuario = :usuario) " +
+								   "order by l.id")
 				.setParameter("usuario", usuario).list();
 	}
 	
-	public double getValorInicialMedioDoUsuario(Usuario usuario) {
-		return (Double) session.createQuery("select avg(lance.leilao.valorInicial) " +
+	/**
+	 * Media do valor inicial dos leiloes em que o usuario deu lance,
+	 * arredondada para o centavo; zero se ele nao deu nenhum lance.
+	 */
+	public Dinheiro getValorInicialMedioDoUsuario(Usuario usuario) {
+		Double centavos = (Double) session.createQuery("select avg(lance.leilao.valorInicial) " +
 											"from Lance lance " +
 											"where lance.usuario = :usuario")
 					.setParameter("usuario", usuario)
 					.uniqueResult();
+		return centavos == null ? Dinheiro.ZERO : Dinheiro.emCentavos(Math.round(centavos));
+	}
+
+	/**
+	 * Como novos(), mas trazendo junto o que o Carregamento pedir.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Leilao> novos(Carregamento carregamento) {
+		return session.createQuery("select distinct l from Leilao l" + carregamento.getJoins() +
+				" where l.usado = false order by l.dataAbertura, l.id")
+				.list();
+	}
+
+	/**
+	 * Leiloes em que o usuario deu lance, sem repeticao, trazendo junto o
+	 * que o Carregamento pedir.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Leilao> listaLeiloesDoUsuario(Usuario usuario, Carregamento carregamento) {
+		return session.createQuery("select distinct l from Leilao l" + carregamento.getJoins() +
+				" where l.id in (select doUsuario.leilao.id from Lance doUsuario where doUsuario.usuario = :usuario)" +
+				" order by l.dataAbertura, l.id")
+				.setParameter("usuario", usuario)
+				.list();
+	}
+
+	/**
+	 * Percorre os leiloes antigos sem carrega-los todos de uma vez: as linhas
+	 * vem do banco em blocos de tamanhoDoFetch e, a cada bloco, a sessao e
+	 * limpa. Alteracoes pendentes sao enviadas ao banco antes, mas objetos
+	 * que o chamador ja tinha na sessao saem dela desanexados.
+	 *
+	 * @return quantos leiloes foram processados
+	 */
+	public long processaAntigos(int tamanhoDoFetch, Processador<Leilao> processador) {
+		Query query = session.createQuery("from Leilao l where l.dataAbertura <= :data order by l.id")
+				.setParameter("data", seteDiasAtras());
+		return percorre(query, tamanhoDoFetch, processador);
+	}
+
+	public long processaAntigos(Processador<Leilao> processador) {
+		return processaAntigos(tamanhoPadraoDoFetch(), processador);
+	}
+
+	/**
+	 * Percorre todos os lances de um usuario, nas mesmas condicoes de
+	 * processaAntigos.
+	 */
+	public long processaLancesDoUsuario(Usuario usuario, int tamanhoDoFetch, Processador<Lance> processador) {
+		Query query = session.createQuery("from Lance lance where lance.usuario = :usuario order by lance.id")
+				.setParameter("usuario", usuario);
+		return percorre(query, tamanhoDoFetch, processador);
+	}
+
+	public long processaLancesDoUsuario(Usuario usuario, Processador<Lance> processador) {
+		return processaLancesDoUsuario(usuario, tamanhoPadraoDoFetch(), processador);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> long percorre(Query query, int tamanhoDoFetch, Processador<T> processador) {
+		if(tamanhoDoFetch < 1) {
+			throw new IllegalArgumentException("O tamanho do fetch deve ser positivo: " + tamanhoDoFetch);
+		}
+		session.flush();
+
+		ScrollableResults resultados = query
+				.setFetchSize(tamanhoDoFetch)
+				.setReadOnly(true)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		long processados = 0;
+		try {
+			while(resultados.next()) {
+				processador.processa((T) resultados.get(0));
+				if(++processados % tamanhoDoFetch == 0) {
+					session.clear();
+				}
+			}
+		} finally {
+			resultados.close();
+		}
+		session.clear();
+		return processados;
+	}
+
+	private int tamanhoPadraoDoFetch() {
+		Integer configurado = ((SessionFactoryImplementor) session.getSessionFactory())
+				.getSettings().getJdbcFetchSize();
+		return configurado != null && configurado > 0 ? configurado : TAMANHO_PADRAO_DO_FETCH;
+	}
+
+	/*
+	 * Variantes paginadas. As com (pagina, tamanho) usam OFFSET, com a
+	 * pagina comecando em 0; as "APartirDe" usam o cursor da pagina anterior
+	 * (null para a primeira) e custam o mesmo em qualquer profundidade.
+	 */
+
+	@SuppressWarnings("unchecked")
+	public List<Leilao> novos(int pagina, int tamanho) {
+		return pagina(session.createQuery("from Leilao l where l.usado = false " +
+				"order by l.dataAbertura, l.id"), pagina, tamanho)
+				.setCacheable(true)
+				.list();
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<Leilao> antigos(int pagina, int tamanho) {
+		return pagina(session.createQuery("from Leilao l where l.dataAbertura <= :data " +
+				"order by l.dataAbertura, l.id"), pagina, tamanho)
+				.setParameter("data", seteDiasAtras())
+				.list();
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<Leilao> porPeriodo(Instant inicio, Instant fim, int pagina, int tamanho) {
+		return pagina(session.createQuery("from Leilao l where l.dataAbertura " +
+				"between :inicio and :fim and l.encerrado = false " +
+				"order by l.dataAbertura, l.id"), pagina, tamanho)
+				.setParameter("inicio", inicio.toEpochMilli())
+				.setParameter("fim", fim.toEpochMilli())
+				.list();
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<Leilao> disputadosEntre(Dinheiro inicio, Dinheiro fim, int pagina, int tamanho) {
+		return pagina(session.createQuery("from Leilao l where l.valorInicial " +
+				"between :inicio and :fim and l.encerrado = false " +
+				"and l.quantidadeDeLances > 3 " +
+				"order by l.valorInicial, l.id"), pagina, tamanho)
+				.setParameter("inicio", inicio.getCentavos())
+				.setParameter("fim", fim.getCentavos())
+				.list();
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<Leilao> listaLeiloesDoUsuario(Usuario usuario, int pagina, int tamanho) {
+		return pagina(session.createQuery("from Leilao l where l.id in " +
+				"(select lance.leilao.id from Lance lance where lance.usuario = :usuario) " +
+				"order by l.dataAbertura, l.id"), pagina, tamanho)
+				.setParameter("usuario", usuario)
+				.list();
+	}
+
+	public Pagina<Leilao, Instant> novosAPartirDe(Cursor<Instant> cursor, int limite) {
+		Query query = session.createQuery("from Leilao l where l.usado = false" +
+				depoisDoCursor(cursor, "dataAbertura"));
+		return paginaPorData(query, cursor, limite);
+	}
+
+	public Pagina<Leilao, Instant> antigosAPartirDe(Cursor<Instant> cursor, int limite) {
+		Query query = session.createQuery("from Leilao l where l.dataAbertura <= :data" +
+				depoisDoCursor(cursor, "dataAbertura"))
+				.setParameter("data", seteDiasAtras());
+		return paginaPorData(query, cursor, limite);
+	}
+
+	public Pagina<Leilao, Instant> porPeriodoAPartirDe(Instant inicio, Instant fim,
+			Cursor<Instant> cursor, int limite) {
+		Query query = session.createQuery("from Leilao l where l.dataAbertura " +
+				"between :inicio and :fim and l.encerrado = false" +
+				depoisDoCursor(cursor, "dataAbertura"))
+				.setParameter("inicio", inicio.toEpochMilli())
+				.setParameter("fim", fim.toEpochMilli());
+		return paginaPorData(query, cursor, limite);
+	}
+
+	public Pagina<Leilao, Dinheiro> disputadosEntreAPartirDe(Dinheiro inicio, Dinheiro fim,
+			Cursor<Dinheiro> cursor, int limite) {
+		Query query = session.createQuery("from Leilao l where l.valorInicial " +
+				"between :inicio and :fim and l.encerrado = false " +
+				"and l.quantidadeDeLances > 3" +
+				depoisDoCursor(cursor, "valorInicial"))
+				.setParameter("inicio", inicio.getCentavos())
+				.setParameter("fim", fim.getCentavos());
+		return paginaPorValor(query, cursor, limite);
+	}
+
+	public Pagina<Leilao, Instant> leiloesDoUsuarioAPartirDe(Usuario usuario,
+			Cursor<Instant> cursor, int limite) {
+		Query query = session.createQuery("from Leilao l where l.id in " +
+				"(select lance.leilao.id from Lance lance where lance.usuario = :usuario)" +
+				depoisDoCursor(cursor, "dataAbertura"))
+				.setParameter("usuario", usuario);
+		return paginaPorData(query, cursor, limite);
+	}
+
+	private static long seteDiasAtras() {
+		return System.currentTimeMillis() - SETE_DIAS_EM_MILLIS;
+	}
+
+	private static Query pagina(Query query, int pagina, int tamanho) {
+		if(pagina < 0 || tamanho < 1) {
+			throw new IllegalArgumentException("Pagina invalida: " + pagina + " de tamanho " + tamanho);
+		}
+		return query.setFirstResult(pagina * tamanho).setMaxResults(tamanho);
+	}
+
+	private static String depoisDoCursor(Cursor<?> cursor, String campo) {
+		String ordem = " order by l." + campo + ", l.id";
+		if(cursor == null) return ordem;
+
+		// o >= fora do or vira o inicio da faixa no indice (..., campo, id)
+		return " and l." + campo + " >= :chave and (l." + campo + " > :chave or l.id > :ultimoId)" + ordem;
+	}
+
+	private static List<Leilao> buscaPagina(Query query, Object chave, Cursor<?> cursor, int limite) {
+		if(limite < 1) {
+			throw new IllegalArgumentException("O limite deve ser positivo: " + limite);
+		}
+		if(cursor != null) {
+			query.setParameter("chave", chave)
+				.setParameter("ultimoId", cursor.getId());
+		}
+
+		@SuppressWarnings("unchecked")
+		List<Leilao> leiloes = query.setMaxResults(limite + 1).list();
+		return leiloes;
+	}
+
+	private static Pagina<Leilao, Instant> paginaPorData(Query query, Cursor<Instant> cursor, int limite) {
+		// a coluna guarda o epoch em milissegundos
+		Long chave = cursor == null ? null : cursor.getChave().toEpochMilli();
+		List<Leilao> leiloes = buscaPagina(query, chave, cursor, limite);
+		if(leiloes.size() <= limite) {
+			return new Pagina<Leilao, Instant>(leiloes, null);
+		}
+
+		leiloes.remove(limite);
+		Leilao ultimo = leiloes.get(limite - 1);
+		return new Pagina<Leilao, Instant>(leiloes,
+				new Cursor<Instant>(ultimo.getDataAbertura(), ultimo.getId()));
+	}
+
+	private static Pagina<Leilao, Dinheiro> paginaPorValor(Query query, Cursor<Dinheiro> cursor, int limite) {
+		Long chave = cursor == null ? null : cursor.getChave().getCentavos();
+		List<Leilao> leiloes = buscaPagina(query, chave, cursor, limite);
+		if(leiloes.size() <= limite) {
+			return new Pagina<Leilao, Dinheiro>(leiloes, null);
+		}
+
+		leiloes.remove(limite);
+		Leilao ultimo = leiloes.get(limite - 1);
+		return new Pagina<Leilao, Dinheiro>(leiloes,
+				new Cursor<Dinheiro>(ultimo.getValorInicial(), ultimo.getId()));
 	}
 }
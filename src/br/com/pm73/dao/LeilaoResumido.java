@@ -0,0 +1,38 @@
+package br.com.pm73.dao;
+
+import br.com.pm73.dominio.Dinheiro;
+
+/**
+ * Os poucos campos de um Leilao que a lista "meus leiloes" mostra. Vem
+ * direto de uma projecao HQL, sem entidade gerenciada pela sessao.
+ */
+public class LeilaoResumido {
+
+	private final int id;
+	private final String nome;
+	private final Dinheiro valorInicial;
+	private final boolean encerrado;
+
+	public LeilaoResumido(int id, String nome, long valorInicialEmCentavos, boolean encerrado) {
+		this.id = id;
+		this.nome = nome;
+		this.valorInicial = Dinheiro.emCentavos(valorInicialEmCentavos);
+		this.encerrado = encerrado;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getNome() {
+		return nome;
+	}
+
+	public Dinheiro getValorInicial() {
+		return valorInicial;
+	}
+
+	public boolean isEncerrado() {
+		return encerrado;
+	}
+}
@@ -0,0 +1,30 @@
+package br.com.pm73.dao;
+
+import java.util.List;
+
+/**
+ * Uma pagina de resultados e o cursor para buscar a seguinte.
+ * O cursor e nulo quando nao ha mais resultados.
+ */
+public class Pagina<T, K> {
+
+	private final List<T> itens;
+	private final Cursor<K> proximo;
+
+	public Pagina(List<T> itens, Cursor<K> proximo) {
+		this.itens = itens;
+		this.proximo = proximo;
+	}
+
+	public List<T> getItens() {
+		return itens;
+	}
+
+	public Cursor<K> getProximo() {
+		return proximo;
+	}
+
+	public boolean temProxima() {
+		return proximo != null;
+	}
+}
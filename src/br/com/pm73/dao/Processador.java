@@ -0,0 +1,9 @@
+package br.com.pm73.dao;
+
+/**
+ * Recebe, um a um, os itens de uma consulta percorrida em fluxo pelo DAO.
+ */
+public interface Processador<T> {
+
+	void processa(T item);
+}
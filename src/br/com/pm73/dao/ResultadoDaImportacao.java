@@ -0,0 +1,41 @@
+package br.com.pm73.dao;
+
+/**
+ * Quantidades e tempo gasto por LeilaoDao.salvarTodos.
+ */
+public class ResultadoDaImportacao {
+
+	private final int leiloes;
+	private final long linhas;
+	private final long duracaoEmNanos;
+
+	public ResultadoDaImportacao(int leiloes, long linhas, long duracaoEmNanos) {
+		this.leiloes = leiloes;
+		this.linhas = linhas;
+		this.duracaoEmNanos = duracaoEmNanos;
+	}
+
+	public int getLeiloes() {
+		return leiloes;
+	}
+
+	/** Leiloes mais lances inseridos. */
+	public long getLinhas() {
+		return linhas;
+	}
+
+	public double getDuracaoEmMillis() {
+		return duracaoEmNanos / 1000000.0;
+	}
+
+	public double getLinhasPorSegundo() {
+		if (duracaoEmNanos == 0) return 0.0;
+		return linhas * 1000000000.0 / duracaoEmNanos;
+	}
+
+	@Override
+	public String toString() {
+		return leiloes + " leiloes, " + linhas + " linhas em " + getDuracaoEmMillis()
+				+ "ms (" + Math.round(getLinhasPorSegundo()) + " linhas/s)";
+	}
+}
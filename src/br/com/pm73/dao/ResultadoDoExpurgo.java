@@ -0,0 +1,43 @@
+package br.com.pm73.dao;
+
+/**
+ * Quantidades removidas e tempo gasto por LeilaoDao.expurgaEncerrados,
+ * acumulados ate o ultimo lote confirmado.
+ */
+public class ResultadoDoExpurgo {
+
+	private final int lotes;
+	private final long leiloes;
+	private final long lances;
+	private final long duracaoEmNanos;
+
+	public ResultadoDoExpurgo(int lotes, long leiloes, long lances, long duracaoEmNanos) {
+		this.lotes = lotes;
+		this.leiloes = leiloes;
+		this.lances = lances;
+		this.duracaoEmNanos = duracaoEmNanos;
+	}
+
+	/** Lotes (transacoes) ja confirmados. */
+	public int getLotes() {
+		return lotes;
+	}
+
+	public long getLeiloes() {
+		return leiloes;
+	}
+
+	public long getLances() {
+		return lances;
+	}
+
+	public double getDuracaoEmMillis() {
+		return duracaoEmNanos / 1000000.0;
+	}
+
+	@Override
+	public String toString() {
+		return lotes + " lotes, " + leiloes + " leiloes e " + lances + " lances removidos em "
+				+ getDuracaoEmMillis() + "ms";
+	}
+}
@@ -0,0 +1,10 @@
+package br.com.pm73.dao;
+
+/**
+ * O que roda dentro de uma transacao aberta por Transacoes. O retorno e
+ * devolvido a quem chamou; use null quando nao houver o que devolver.
+ */
+public interface Trabalho<T> {
+
+	T executa(UnidadeDeTrabalho unidade);
+}
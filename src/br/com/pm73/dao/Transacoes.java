@@ -0,0 +1,81 @@
+package br.com.pm73.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+
+/**
+ * Agrupa varias operacoes dos DAOs numa sessao e numa transacao:
+ *
+ * <pre>
+ * Leilao leilao = transacoes.emTransacao(unidade -&gt; {
+ *     unidade.usuarios().salvar(dono);
+ *     unidade.leiloes().salvar(leilao);
+ *     return leilao;
+ * });
+ * </pre>
+ *
+ * Se o Trabalho terminar normalmente a transacao e confirmada; se lancar
+ * uma excecao ela e desfeita e a excecao segue para quem chamou. A sessao
+ * e sempre fechada no fim, entao a conexao volta ao pool assim que a
+ * chamada retorna e as entidades devolvidas ficam destacadas. Cada chamada
+ * abre a sua propria sessao, mesmo dentro de outra. Pode ser usado por
+ * varias threads.
+ */
+public class Transacoes {
+
+	private final CriadorDeSessao criador;
+
+	public Transacoes() {
+		this(new CriadorDeSessao());
+	}
+
+	public Transacoes(CriadorDeSessao criador) {
+		this.criador = criador;
+	}
+
+	public <T> T emTransacao(Trabalho<T> trabalho) {
+		return executa(criador.getSession(), false, trabalho);
+	}
+
+	/**
+	 * Como emTransacao, mas numa sessao somente leitura (veja
+	 * CriadorDeSessao.getSessionSomenteLeitura) e numa transacao somente
+	 * leitura do HSQLDB, que recusa qualquer escrita e nunca pede locks de
+	 * escrita. Nada e enviado ao banco no fim.
+	 */
+	public <T> T somenteLeitura(Trabalho<T> trabalho) {
+		return executa(criador.getSessionSomenteLeitura(), true, trabalho);
+	}
+
+	private <T> T executa(Session session, boolean somenteLeitura, Trabalho<T> trabalho) {
+		try {
+			session.beginTransaction();
+			if(somenteLeitura) {
+				// so vale como primeiro comando e so para esta transacao, entao a
+				// conexao volta ao pool sem a marca
+				session.doWork(new Work() {
+					public void execute(Connection conexao) throws SQLException {
+						Statement statement = conexao.createStatement();
+						try {
+							statement.execute("set transaction read only");
+						} finally {
+							statement.close();
+						}
+					}
+				});
+			}
+			T resultado = trabalho.executa(new UnidadeDeTrabalho(session));
+			session.getTransaction().commit();
+			return resultado;
+		} finally {
+			if(session.getTransaction().isActive()) {
+				session.getTransaction().rollback();
+			}
+			session.close();
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package br.com.pm73.dao;
+
+import br.com.pm73.infra.Instrumentacao;
+import org.hibernate.Session;
+
+/**
+ * Os DAOs de uma transacao aberta por Transacoes, todos na mesma sessao e,
+ * portanto, na mesma conexao. So vale enquanto o Trabalho estiver rodando.
+ * Os DAOs vem instrumentados (veja Instrumentacao).
+ */
+public class UnidadeDeTrabalho {
+
+	private final Session session;
+	private LeilaoDao leiloes;
+	private UsuarioDao usuarios;
+
+	UnidadeDeTrabalho(Session session) {
+		this.session = session;
+	}
+
+	public LeilaoDao leiloes() {
+		if(leiloes == null) leiloes = Instrumentacao.instrumenta(LeilaoDao.class, session);
+		return leiloes;
+	}
+
+	public UsuarioDao usuarios() {
+		if(usuarios == null) usuarios = Instrumentacao.instrumenta(UsuarioDao.class, session);
+		return usuarios;
+	}
+
+	public Session getSession() {
+		return session;
+	}
+}
@@ -20,6 +20,7 @@ public class UsuarioDao {
 				"from Usuario u where u.nome = :nome and u.email = :email")
 				.setParameter("nome", nome)
 				.setParameter("email", email)
+				.setCacheable(true)
 				.uniqueResult();
 	}
 
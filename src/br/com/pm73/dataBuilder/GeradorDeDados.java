@@ -0,0 +1,282 @@
+package br.com.pm73.dataBuilder;
+
+import br.com.pm73.dao.CriadorDeSessao;
+import br.com.pm73.dao.LeilaoDao;
+import br.com.pm73.dao.UsuarioDao;
+import br.com.pm73.dominio.Dinheiro;
+import br.com.pm73.dominio.Leilao;
+import br.com.pm73.dominio.Usuario;
+import org.hibernate.Session;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gera massas grandes de usuarios, leiloes e lances para testes de carga,
+ * montando cada leilao com o LeilaoBuilder e gravando pelo
+ * LeilaoDao.salvarTodos.
+ *
+ * O trabalho e dividido em blocos de tamanho fixo, cada um com o seu
+ * proprio Random derivado da semente e do numero do bloco, e os blocos
+ * rodam em paralelo, cada um na sua sessao e transacao. Assim a mesma
+ * semente e a mesma configuracao geram os mesmos dados em qualquer numero
+ * de threads; so os ids, que vem das sequences, podem mudar. Com o
+ * TRANSACTION CONTROL LOCKS do HSQLDB as gravacoes na mesma tabela se
+ * revezam, entao o ganho do paralelismo esta na montagem dos objetos.
+ *
+ * Os e-mails levam a semente, entao duas geracoes com sementes diferentes
+ * podem ir para a mesma base.
+ */
+public class GeradorDeDados {
+
+	public static final int TAMANHO_DO_BLOCO = 5000;
+
+	private final long semente;
+	private CriadorDeSessao criador = new CriadorDeSessao();
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int usuarios = 1000;
+	private int leiloes = 10000;
+	private int lancesPorLeilao = 5;
+	private double concentracaoDosLicitantes = 2.0;
+	private long valorMinimo = Dinheiro.reais(10).getCentavos();
+	private long valorMaximo = Dinheiro.reais(10000).getCentavos();
+	private Instant referencia = Instant.now();
+	private int diasDeAbertura = 365;
+	private double proporcaoDeUsados = 0.5;
+	private double proporcaoDeEncerrados = 0.3;
+
+	public GeradorDeDados(long semente) {
+		this.semente = semente;
+	}
+
+	public GeradorDeDados comCriador(CriadorDeSessao criador) {
+		this.criador = criador;
+		return this;
+	}
+
+	public GeradorDeDados emThreads(int threads) {
+		if(threads < 1) throw new IllegalArgumentException("Numero de threads invalido: " + threads);
+		this.threads = threads;
+		return this;
+	}
+
+	public GeradorDeDados comUsuarios(int usuarios) {
+		if(usuarios < 1) throw new IllegalArgumentException("E preciso ao menos um usuario");
+		this.usuarios = usuarios;
+		return this;
+	}
+
+	public GeradorDeDados comLeiloes(int leiloes) {
+		if(leiloes < 0) throw new IllegalArgumentException("Numero de leiloes invalido: " + leiloes);
+		this.leiloes = leiloes;
+		return this;
+	}
+
+	/**
+	 * Media de lances por leilao; cada leilao recebe de 0 ao dobro disso.
+	 */
+	public GeradorDeDados comLancesPorLeilao(int media) {
+		if(media < 0 || media > (Integer.MAX_VALUE - 1) / 2) {
+			throw new IllegalArgumentException("Media de lances por leilao invalida: " + media);
+		}
+		this.lancesPorLeilao = media;
+		return this;
+	}
+
+	/**
+	 * Quanto os lances se concentram nos primeiros usuarios: 1 e uniforme,
+	 * e quanto maior, mais poucos licitantes dao a maior parte dos lances
+	 * (com 2, os 10% primeiros dao cerca de 30% dos lances; com 4, mais da
+	 * metade).
+	 */
+	public GeradorDeDados comConcentracaoDosLicitantes(double expoente) {
+		if(expoente < 1) throw new IllegalArgumentException("A concentracao deve ser ao menos 1: " + expoente);
+		this.concentracaoDosLicitantes = expoente;
+		return this;
+	}
+
+	/**
+	 * Faixa do valor inicial. A distribuicao e log-uniforme: ha tantos
+	 * leiloes entre 10 e 100 reais quanto entre 1.000 e 10.000.
+	 */
+	public GeradorDeDados comValoresEntre(Dinheiro minimo, Dinheiro maximo) {
+		if(minimo.getCentavos() < 1 || maximo.menorQue(minimo)) {
+			throw new IllegalArgumentException("Faixa de valores invalida: " + minimo + " a " + maximo);
+		}
+		this.valorMinimo = minimo.getCentavos();
+		this.valorMaximo = maximo.getCentavos();
+		return this;
+	}
+
+	/**
+	 * As aberturas ficam espalhadas uniformemente nos dias anteriores a
+	 * referencia. Para gerar sempre as mesmas datas, fixe a referencia.
+	 */
+	public GeradorDeDados abertosNosDiasAntesDe(int dias, Instant referencia) {
+		if(dias < 0) throw new IllegalArgumentException("Numero de dias invalido: " + dias);
+		if(referencia == null) throw new IllegalArgumentException("A referencia das aberturas e obrigatoria");
+		this.diasDeAbertura = dias;
+		this.referencia = referencia;
+		return this;
+	}
+
+	public GeradorDeDados comProporcaoDeUsados(double proporcao) {
+		this.proporcaoDeUsados = proporcao(proporcao);
+		return this;
+	}
+
+	public GeradorDeDados comProporcaoDeEncerrados(double proporcao) {
+		this.proporcaoDeEncerrados = proporcao(proporcao);
+		return this;
+	}
+
+	private static double proporcao(double proporcao) {
+		// escrito assim para recusar NaN tambem
+		if(!(proporcao >= 0 && proporcao <= 1)) {
+			throw new IllegalArgumentException("A proporcao deve estar entre 0 e 1: " + proporcao);
+		}
+		return proporcao;
+	}
+
+	public ResultadoDaGeracao gera() {
+		long inicio = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			int[] idsDosUsuarios = geraUsuarios(executor);
+			long lances = geraLeiloes(executor, idsDosUsuarios);
+			return new ResultadoDaGeracao(usuarios, leiloes, lances, System.nanoTime() - inicio);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private int[] geraUsuarios(ExecutorService executor) {
+		final int[] ids = new int[usuarios];
+		List<Future<Long>> blocos = new ArrayList<Future<Long>>();
+		for(int inicio = 0; inicio < usuarios; inicio += TAMANHO_DO_BLOCO) {
+			final int primeiro = inicio;
+			final int ultimo = Math.min(inicio + TAMANHO_DO_BLOCO, usuarios);
+			blocos.add(executor.submit(new Callable<Long>() {
+				public Long call() {
+					Session session = criador.getSession();
+					try {
+						session.beginTransaction();
+						UsuarioDao usuarioDao = new UsuarioDao(session);
+						for(int i = primeiro; i < ultimo; i++) {
+							Usuario usuario = new Usuario("Usuario " + i, "usuario" + i + "." + semente + "@gerador.pm73.com.br");
+							usuarioDao.salvar(usuario);
+							// cada posicao e escrita por um unico bloco; o get() dos
+							// Futures publica os valores para a thread que chamou gera()
+							ids[i] = usuario.getId();
+							if((i - primeiro + 1) % 50 == 0) {
+								session.flush();
+								session.clear();
+							}
+						}
+						session.getTransaction().commit();
+						return (long) (ultimo - primeiro);
+					} finally {
+						fecha(session);
+					}
+				}
+			}));
+		}
+		aguarda(blocos);
+		return ids;
+	}
+
+	private long geraLeiloes(ExecutorService executor, final int[] idsDosUsuarios) {
+		List<Future<Long>> blocos = new ArrayList<Future<Long>>();
+		for(int inicio = 0, bloco = 0; inicio < leiloes; inicio += TAMANHO_DO_BLOCO, bloco++) {
+			final int primeiro = inicio;
+			final int ultimo = Math.min(inicio + TAMANHO_DO_BLOCO, leiloes);
+			final Random aleatorio = new Random(semente * 1000003 + bloco);
+			blocos.add(executor.submit(new Callable<Long>() {
+				public Long call() {
+					Session session = criador.getSession();
+					try {
+						session.beginTransaction();
+						Usuario[] referencias = new Usuario[idsDosUsuarios.length];
+						List<Leilao> lote = new ArrayList<Leilao>();
+						long lances = 0;
+						for(int i = primeiro; i < ultimo; i++) {
+							Leilao leilao = leilao(i, aleatorio, session, idsDosUsuarios, referencias);
+							lances += leilao.getLances().size();
+							lote.add(leilao);
+						}
+						new LeilaoDao(session).salvarTodos(lote);
+						session.getTransaction().commit();
+						return lances;
+					} finally {
+						fecha(session);
+					}
+				}
+			}));
+		}
+		return aguarda(blocos);
+	}
+
+	private Leilao leilao(int numero, Random aleatorio, Session session, int[] idsDosUsuarios, Usuario[] referencias) {
+		long valor = (long) (valorMinimo * Math.pow((double) valorMaximo / valorMinimo, aleatorio.nextDouble()));
+		long abertura = referencia.toEpochMilli() - (long) (aleatorio.nextDouble() * diasDeAbertura * 86400000L);
+
+		LeilaoBuilder builder = new LeilaoBuilder()
+				.comNome("Leilao " + numero)
+				.comDono(usuario(aleatorio.nextInt(usuarios), session, idsDosUsuarios, referencias))
+				.comValorEmCentavos(valor)
+				.abertoEm(Instant.ofEpochMilli(abertura));
+		if(aleatorio.nextDouble() < proporcaoDeUsados) builder.usado();
+		if(aleatorio.nextDouble() < proporcaoDeEncerrados) builder.encerrado();
+
+		int quantidade = lancesPorLeilao == 0 ? 0 : aleatorio.nextInt(2 * lancesPorLeilao + 1);
+		long agora = referencia.toEpochMilli();
+		for(int i = 0; i < quantidade; i++) {
+			// cada lance supera o anterior em 1% a 10%, um pouco depois dele
+			valor += Math.max(1, valor * (1 + aleatorio.nextInt(10)) / 100);
+			abertura += (long) (aleatorio.nextDouble() * (agora - abertura) / (quantidade - i));
+			int licitante = (int) (usuarios * Math.pow(aleatorio.nextDouble(), concentracaoDosLicitantes));
+			builder.comLanceEmCentavos(Instant.ofEpochMilli(abertura),
+					usuario(licitante, session, idsDosUsuarios, referencias), valor);
+		}
+		return builder.constroi();
+	}
+
+	// referencia sem select; a mesma instancia para o mesmo usuario no bloco
+	private static Usuario usuario(int indice, Session session, int[] idsDosUsuarios, Usuario[] referencias) {
+		if(referencias[indice] == null) {
+			referencias[indice] = (Usuario) session.load(Usuario.class, idsDosUsuarios[indice]);
+		}
+		return referencias[indice];
+	}
+
+	private static long aguarda(List<Future<Long>> blocos) {
+		long total = 0;
+		try {
+			for(Future<Long> bloco : blocos) {
+				total += bloco.get();
+			}
+			return total;
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Geracao interrompida", e);
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw new IllegalStateException("Falha ao gerar os dados", e.getCause());
+		}
+	}
+
+	private static void fecha(Session session) {
+		if(session.getTransaction().isActive()) {
+			session.getTransaction().rollback();
+		}
+		session.close();
+	}
+}
@@ -1,29 +1,33 @@
 package br.com.pm73.dataBuilder;
 
+import br.com.pm73.dominio.Dinheiro;
 import br.com.pm73.dominio.Lance;
 import br.com.pm73.dominio.Leilao;
 import br.com.pm73.dominio.Usuario;
 
-import java.util.Calendar;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 
 public class LeilaoBuilder {
 
     private Usuario dono;
-    private double valor;
+    private Dinheiro valor;
     private String nome;
     private boolean usado;
-    private Calendar dataAbertura;
+    private Instant dataAbertura;
     private boolean encerrado;
     private List<Lance> lances;
 
 
     public LeilaoBuilder() {
         this.dono = new Usuario("Joao da Silva", "joao@silva.com.br");
-        this.valor = 1500.0;
+        this.valor = Dinheiro.reais(1500.0);
         this.nome = "XBox";
         this.usado = false;
-        this.dataAbertura = Calendar.getInstance();
+        this.dataAbertura = Instant.now();
+        this.lances = new ArrayList<Lance>();
     }
 
     public LeilaoBuilder comDono(Usuario dono) {
@@ -31,11 +35,15 @@ public class LeilaoBuilder {
         return this;
     }
 
-    public LeilaoBuilder comValor(double valor) {
+    public LeilaoBuilder comValor(Dinheiro valor) {
         this.valor = valor;
         return this;
     }
 
+    public LeilaoBuilder comValorEmCentavos(long valor) {
+        return comValor(Dinheiro.emCentavos(valor));
+    }
+
     public LeilaoBuilder comNome(String nome) {
         this.nome = nome;
         return this;
@@ -52,18 +60,26 @@ public class LeilaoBuilder {
     }
 
     public LeilaoBuilder diasAtras(int dias) {
-        Calendar data = Calendar.getInstance();
-        data.add(Calendar.DAY_OF_MONTH, -dias);
+        Instant data = Instant.now().minus(dias, ChronoUnit.DAYS);
 
         this.dataAbertura = data;
 
         return this;
     }
 
-    public LeilaoBuilder comLance(Calendar data, Usuario usuario, double valor) {
-        Leilao leilao = new Leilao(nome, valor, dono, usado);
-        Lance lance = new Lance(data, usuario, valor, leilao);
-        lances.add(lance);
+    public LeilaoBuilder abertoEm(Instant dataAbertura) {
+        this.dataAbertura = dataAbertura;
+        return this;
+    }
+
+    // o leilao do lance e preenchido em constroi(), por adicionaLance
+    public LeilaoBuilder comLance(Instant data, Usuario usuario, Dinheiro valor) {
+        lances.add(new Lance(data, usuario, valor, null));
+        return this;
+    }
+
+    public LeilaoBuilder comLanceEmCentavos(Instant data, Usuario usuario, long valor) {
+        lances.add(new Lance(data, usuario, valor, null));
         return this;
     }
 
@@ -0,0 +1,51 @@
+package br.com.pm73.dataBuilder;
+
+/**
+ * Quantidades e tempo gasto por GeradorDeDados.gera.
+ */
+public class ResultadoDaGeracao {
+
+	private final int usuarios;
+	private final int leiloes;
+	private final long lances;
+	private final long duracaoEmNanos;
+
+	public ResultadoDaGeracao(int usuarios, int leiloes, long lances, long duracaoEmNanos) {
+		this.usuarios = usuarios;
+		this.leiloes = leiloes;
+		this.lances = lances;
+		this.duracaoEmNanos = duracaoEmNanos;
+	}
+
+	public int getUsuarios() {
+		return usuarios;
+	}
+
+	public int getLeiloes() {
+		return leiloes;
+	}
+
+	public long getLances() {
+		return lances;
+	}
+
+	/** Usuarios, leiloes e lances inseridos. */
+	public long getLinhas() {
+		return usuarios + leiloes + lances;
+	}
+
+	public double getDuracaoEmMillis() {
+		return duracaoEmNanos / 1000000.0;
+	}
+
+	public double getLinhasPorSegundo() {
+		if (duracaoEmNanos == 0) return 0.0;
+		return getLinhas() * 1000000000.0 / duracaoEmNanos;
+	}
+
+	@Override
+	public String toString() {
+		return usuarios + " usuarios, " + leiloes + " leiloes, " + lances + " lances em "
+				+ getDuracaoEmMillis() + "ms (" + Math.round(getLinhasPorSegundo()) + " linhas/s)";
+	}
+}
@@ -0,0 +1,87 @@
+package br.com.pm73.dominio;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Valor em dinheiro, guardado como um long de centavos: exato, sem o
+ * arredondamento do double. As entidades guardam so o long (BIGINT no
+ * banco) e criam um Dinheiro quando o valor e pedido; em lacos quentes use
+ * getCentavos() para somar e comparar sem alocar.
+ */
+public final class Dinheiro implements Comparable<Dinheiro> {
+
+	public static final Dinheiro ZERO = new Dinheiro(0);
+
+	private final long centavos;
+
+	private Dinheiro(long centavos) {
+		this.centavos = centavos;
+	}
+
+	public static Dinheiro emCentavos(long centavos) {
+		return centavos == 0 ? ZERO : new Dinheiro(centavos);
+	}
+
+	/**
+	 * Converte um valor em reais, arredondando para o centavo mais proximo
+	 * (500.0 vira 50000 centavos, 0.1 vira 10; meio centavo sobe).
+	 */
+	public static Dinheiro reais(double valor) {
+		return reais(BigDecimal.valueOf(valor));
+	}
+
+	public static Dinheiro reais(String valor) {
+		return reais(new BigDecimal(valor));
+	}
+
+	public static Dinheiro reais(BigDecimal valor) {
+		return emCentavos(valor.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact());
+	}
+
+	public long getCentavos() {
+		return centavos;
+	}
+
+	public BigDecimal emReais() {
+		return BigDecimal.valueOf(centavos, 2);
+	}
+
+	public Dinheiro mais(Dinheiro outro) {
+		return emCentavos(Math.addExact(centavos, outro.centavos));
+	}
+
+	public Dinheiro menos(Dinheiro outro) {
+		return emCentavos(Math.subtractExact(centavos, outro.centavos));
+	}
+
+	public boolean maiorQue(Dinheiro outro) {
+		return centavos > outro.centavos;
+	}
+
+	public boolean menorQue(Dinheiro outro) {
+		return centavos < outro.centavos;
+	}
+
+	@Override
+	public int compareTo(Dinheiro outro) {
+		return Long.compare(centavos, outro.centavos);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof Dinheiro)) return false;
+		return centavos == ((Dinheiro) obj).centavos;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(centavos);
+	}
+
+	@Override
+	public String toString() {
+		return emReais().toPlainString();
+	}
+}
@@ -1,37 +1,61 @@
 package br.com.pm73.dominio;
 
-import java.util.Calendar;
+import java.time.Instant;
 
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
+import javax.persistence.SequenceGenerator;
+
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.Index;
+import org.hibernate.annotations.Table;
 
 @Entity
+@DynamicUpdate
+@Table(appliesTo = "Lance", indexes = {
+	// listaLeiloesDoUsuario() e getValorInicialMedioDoUsuario(); leilao_id
+	// sozinho ja tem o indice que o HSQLDB cria para a chave estrangeira
+	@Index(name = "idx_lance_usuario_leilao", columnNames = {"usuario_id", "leilao_id"})
+})
 public class Lance {
 
-	@Id @GeneratedValue
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "lance_seq")
+	@SequenceGenerator(name = "lance_seq", sequenceName = "LANCE_SEQ", allocationSize = 50)
 	private int id;
-	private double valor;
-	private Calendar data;
-	@ManyToOne
+	// em centavos, veja Dinheiro
+	private long valor;
+	// epoch em milissegundos, como Leilao.dataAbertura
+	private long data;
+	@ManyToOne(fetch = FetchType.LAZY)
 	private Usuario usuario;
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
 	private Leilao leilao;
 	
 	protected Lance() {}
-	public Lance(Calendar data, Usuario usuario, double valor, Leilao leilao) {
+	public Lance(Instant data, Usuario usuario, Dinheiro valor, Leilao leilao) {
+		this(data, usuario, valor.getCentavos(), leilao);
+	}
+	public Lance(Instant data, Usuario usuario, long valorEmCentavos, Leilao leilao) {
 		this.usuario = usuario;
-		this.data = data;
-		this.valor = valor;
+		this.data = data.toEpochMilli();
+		this.valor = valorEmCentavos;
 		this.leilao = leilao;
 	}
 	
-	public double getValor() {
+	public Dinheiro getValor() {
+		return Dinheiro.emCentavos(valor);
+	}
+	// o mesmo valor sem criar um Dinheiro, para comparacoes e somas em lote
+	public long getValorEmCentavos() {
 		return valor;
 	}
-	public void setValor(double valor) {
-		this.valor = valor;
+	public void setValor(Dinheiro valor) {
+		this.valor = valor.getCentavos();
 	}
 	public Leilao getLeilao() {
 		return leilao;
@@ -39,11 +63,11 @@ public class Lance {
 	public void setLeilao(Leilao leilao) {
 		this.leilao = leilao;
 	}
-	public Calendar getData() {
-		return data;
+	public Instant getData() {
+		return Instant.ofEpochMilli(data);
 	}
-	public void setData(Calendar data) {
-		this.data = data;
+	public void setData(Instant data) {
+		this.data = data.toEpochMilli();
 	}
 	public Usuario getUsuario() {
 		return usuario;
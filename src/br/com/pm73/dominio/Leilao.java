@@ -1,50 +1,91 @@
 package br.com.pm73.dominio;
 
+import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.Index;
+import org.hibernate.annotations.Table;
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@BatchSize(size = 50)
+// o UPDATE leva so as colunas alteradas (e a versao)
+@DynamicUpdate
+@Table(appliesTo = "Leilao", indexes = {
+	// novos(), com a ordem usada na paginacao
+	@Index(name = "idx_leilao_usado_abertura", columnNames = {"usado", "dataAbertura", "id"}),
+	// antigos()
+	@Index(name = "idx_leilao_abertura", columnNames = {"dataAbertura", "id"}),
+	// porPeriodo(), total() e deletaEncerrados()
+	@Index(name = "idx_leilao_encerrado_abertura", columnNames = {"encerrado", "dataAbertura", "id"}),
+	// disputadosEntre(): faixa de valorInicial com um minimo de lances
+	@Index(name = "idx_leilao_encerrado_valor_lances", columnNames = {"encerrado", "valorInicial", "quantidadeDeLances"}),
+	// maisValorizados(): abertos pelo maior lance
+	@Index(name = "idx_leilao_encerrado_maior_lance", columnNames = {"encerrado", "maiorLance", "id"})
+})
 public class Leilao {
 
-	@Id @GeneratedValue
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "leilao_seq")
+	@SequenceGenerator(name = "leilao_seq", sequenceName = "LEILAO_SEQ", allocationSize = 50)
 	private int id;
 	private String nome;
-	private Double valorInicial;
-	@ManyToOne
+	// em centavos, veja Dinheiro
+	private long valorInicial;
+	@ManyToOne(fetch = FetchType.LAZY)
 	private Usuario dono;
-	private Calendar dataAbertura;
+	// epoch em milissegundos: um long no objeto e BIGINT no banco
+	private long dataAbertura;
 	private boolean usado;
 	private boolean encerrado;
 	@OneToMany(cascade=CascadeType.ALL, orphanRemoval=true, mappedBy="leilao")
+	@BatchSize(size = 50)
 	private List<Lance> lances;
+	// controle otimista: quem gravar uma versao antiga recebe StaleObjectStateException
+	@Version
+	private int versao;
+	private int quantidadeDeLances;
+	// em centavos; zero enquanto nao houver lances
+	private long maiorLance;
+	@ManyToOne(fetch = FetchType.LAZY)
+	private Usuario vencedor;
 	
 	public Leilao() {
 		this.lances = new ArrayList<Lance>();
-		this.dataAbertura = Calendar.getInstance();
+		this.dataAbertura = System.currentTimeMillis();
 	}
 	
-	public Leilao(String nome, Double valorInicial, Usuario dono, boolean usado) {
+	public Leilao(String nome, Dinheiro valorInicial, Usuario dono, boolean usado) {
 		this();
 		this.nome = nome;
-		this.valorInicial = valorInicial;
+		this.valorInicial = valorInicial.getCentavos();
 		this.dono = dono;
 		this.usado = usado;
 	}
 
-	public void setDataAbertura(Calendar dataAbertura) {
-		this.dataAbertura = dataAbertura;
+	public void setDataAbertura(Instant dataAbertura) {
+		this.dataAbertura = dataAbertura.toEpochMilli();
 	}
 
-	public Calendar getDataAbertura() {
-		return dataAbertura;
+	public Instant getDataAbertura() {
+		return Instant.ofEpochMilli(dataAbertura);
 	}
 
 	public void setNome(String nome) {
@@ -55,11 +96,15 @@ public class Leilao {
 		return nome;
 	}
 	
-	public void setValorInicial(Double valorInicial) {
-		this.valorInicial = valorInicial;
+	public void setValorInicial(Dinheiro valorInicial) {
+		this.valorInicial = valorInicial.getCentavos();
 	}
 	
-	public Double getValorInicial() {
+	public Dinheiro getValorInicial() {
+		return Dinheiro.emCentavos(valorInicial);
+	}
+
+	public long getValorInicialEmCentavos() {
 		return valorInicial;
 	}
 	
@@ -79,14 +124,51 @@ public class Leilao {
 		this.usado = usado;
 	}
 
+	/**
+	 * Os lances, somente para leitura: adicionaLance e o unico jeito de dar
+	 * um lance, para que a quantidade, o maior lance e o vencedor nao
+	 * fiquem para tras. O Hibernate usa o campo, nao este metodo.
+	 */
 	public List<Lance> getLances() {
-		return lances;
+		return Collections.unmodifiableList(lances);
+	}
+
+	/**
+	 * Quantidade de lances mantida junto com o leilao, para que as consultas
+	 * nao precisem contar a tabela Lance.
+	 */
+	public int getQuantidadeDeLances() {
+		return quantidadeDeLances;
+	}
+
+	/**
+	 * Valor do maior lance, mantido junto com o leilao como a quantidade de
+	 * lances; zero se ainda nao ha lances.
+	 */
+	public Dinheiro getMaiorLance() {
+		return Dinheiro.emCentavos(maiorLance);
+	}
+
+	public long getMaiorLanceEmCentavos() {
+		return maiorLance;
+	}
+
+	/**
+	 * Quem deu o maior lance (o primeiro, em caso de empate), ou null se
+	 * ainda nao ha lances.
+	 */
+	public Usuario getVencedor() {
+		return vencedor;
 	}
 
 	public int getId() {
 		return id;
 	}
 
+	public int getVersao() {
+		return versao;
+	}
+
 	public void encerra() {
 		this.encerrado = true;
 	}
@@ -98,6 +180,12 @@ public class Leilao {
 	public Lance adicionaLance(Lance lance) {
 		lance.setLeilao(this);
 		lances.add(lance);
+		quantidadeDeLances++;
+		long valor = lance.getValorEmCentavos();
+		if(vencedor == null || valor > maiorLance) {
+			maiorLance = valor;
+			vencedor = lance.getUsuario();
+		}
 		return lance;
 	}
 }
@@ -0,0 +1,147 @@
+package br.com.pm73.infra;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.hibernate.HibernateException;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+
+/**
+ * Como o HSQLDB guarda as tabelas de um banco em arquivo.
+ *
+ * MEMORY (o que o caelum.db.script sempre usou) mantem todas as linhas no
+ * heap e, na subida, reexecuta o .script e o .log inteiros. CACHED guarda as
+ * linhas no arquivo .data e so mantem no heap um cache de ate
+ * pm73.banco.cache_linhas linhas ou pm73.banco.cache_kb KB, o que vier
+ * primeiro; a subida fica independente do tamanho da base.
+ *
+ * Com pm73.banco.tabelas definido, aplica() muda o tipo padrao das tabelas
+ * criadas dali em diante (inclusive pelo CriaTabelas e pelo hbm2ddl) e
+ * converte as tabelas de PUBLIC que estiverem no outro tipo. As demais
+ * chaves viram os SET FILES correspondentes e ficam gravadas no
+ * .properties do banco; sem a chave, vale o que o banco ja tiver. O
+ * HSQLDB so passa a usar um novo CACHE SIZE na proxima vez que o banco e
+ * aberto.
+ *
+ * Bancos mem: ficam sempre no heap, entao nada disso se aplica a eles.
+ */
+public class ArmazenamentoDoBanco {
+
+	public static final String TABELAS = "pm73.banco.tabelas";
+	public static final String CACHE_LINHAS = "pm73.banco.cache_linhas";
+	public static final String CACHE_KB = "pm73.banco.cache_kb";
+	public static final String NIO = "pm73.banco.nio";
+	public static final String NIO_MB = "pm73.banco.nio_mb";
+	public static final String DESFRAGMENTA_EM = "pm73.banco.desfragmenta_em";
+
+	public enum Tabelas {
+		MEMORY, CACHED
+	}
+
+	private static final Logger log = Logger.getLogger(ArmazenamentoDoBanco.class.getName());
+
+	private final Tabelas tabelas;
+	private final Integer cacheLinhas;
+	private final Integer cacheKb;
+	private final Boolean nio;
+	private final Integer nioMb;
+	private final Integer desfragmentaEm;
+
+	@SuppressWarnings("rawtypes")
+	public ArmazenamentoDoBanco(Map configuracao) {
+		String tipo = ConfigurationHelper.getString(TABELAS, configuracao);
+		if (tipo == null || tipo.trim().isEmpty()) {
+			this.tabelas = null;
+		} else {
+			try {
+				this.tabelas = Tabelas.valueOf(tipo.trim().toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				throw new HibernateException(TABELAS + " deve ser memory ou cached, e nao " + tipo);
+			}
+		}
+		this.cacheLinhas = ConfigurationHelper.getInteger(CACHE_LINHAS, configuracao);
+		this.cacheKb = ConfigurationHelper.getInteger(CACHE_KB, configuracao);
+		this.nio = configuracao.get(NIO) == null ? null : ConfigurationHelper.getBoolean(NIO, configuracao);
+		this.nioMb = ConfigurationHelper.getInteger(NIO_MB, configuracao);
+		this.desfragmentaEm = ConfigurationHelper.getInteger(DESFRAGMENTA_EM, configuracao);
+
+		if (desfragmentaEm != null && (desfragmentaEm < 0 || desfragmentaEm > 100)) {
+			throw new HibernateException(DESFRAGMENTA_EM + " e um percentual do arquivo .data, de 0 (nunca) a 100");
+		}
+	}
+
+	/** O tipo pedido para as tabelas, ou null para deixar como o banco estiver. */
+	public Tabelas getTabelas() {
+		return tabelas;
+	}
+
+	/**
+	 * Aplica as configuracoes no banco da conexao e devolve as tabelas que
+	 * tiveram o tipo convertido. Precisa de uma conexao de DBA, como a do sa.
+	 */
+	public List<String> aplica(Connection conexao) throws SQLException {
+		List<String> convertidas = new ArrayList<String>();
+		if (conexao.getMetaData().getURL().contains(":mem:")) return convertidas;
+
+		Statement statement = conexao.createStatement();
+		try {
+			if (cacheLinhas != null) statement.execute("set files cache rows " + cacheLinhas);
+			if (cacheKb != null) statement.execute("set files cache size " + cacheKb);
+			if (nio != null) statement.execute("set files nio " + nio);
+			if (nioMb != null) statement.execute("set files nio size " + nioMb);
+			if (desfragmentaEm != null) statement.execute("set files defrag " + desfragmentaEm);
+
+			if (tabelas != null) {
+				statement.execute("set database default table type " + tabelas);
+				for (String tabela : tabelasEmOutroTipo(statement)) {
+					// reescreve a tabela inteira; so acontece na primeira subida com o novo tipo
+					long inicio = System.nanoTime();
+					statement.execute("set table public." + tabela + " type " + tabelas);
+					log.info(String.format(Locale.ROOT, "tabela %s convertida para %s em %.0fms",
+							tabela, tabelas, (System.nanoTime() - inicio) / 1000000.0));
+					convertidas.add(tabela);
+				}
+			}
+		} finally {
+			statement.close();
+		}
+		if (!conexao.getAutoCommit()) conexao.commit();
+		return convertidas;
+	}
+
+	/**
+	 * Grava um checkpoint reescrevendo o .data sem os espacos livres. Com
+	 * pm73.banco.desfragmenta_em o HSQLDB ja faz isso sozinho nos
+	 * checkpoints em que o desperdicio passa do percentual; este metodo e
+	 * para depois de expurgos grandes.
+	 */
+	public static void desfragmenta(Connection conexao) throws SQLException {
+		Statement statement = conexao.createStatement();
+		try {
+			statement.execute("checkpoint defrag");
+		} finally {
+			statement.close();
+		}
+	}
+
+	private List<String> tabelasEmOutroTipo(Statement statement) throws SQLException {
+		List<String> tabelasEmOutroTipo = new ArrayList<String>();
+		ResultSet resultado = statement.executeQuery("select table_name from information_schema.system_tables"
+				+ " where table_schem = 'PUBLIC' and table_type = 'TABLE' and hsqldb_type <> '" + tabelas + "'");
+		try {
+			while (resultado.next()) {
+				tabelasEmOutroTipo.add(resultado.getString(1));
+			}
+		} finally {
+			resultado.close();
+		}
+		return tabelasEmOutroTipo;
+	}
+}
@@ -0,0 +1,155 @@
+package br.com.pm73.infra;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import org.hibernate.cfg.AvailableSettings;
+
+/**
+ * Monta as propriedades do Hibernate a partir de um Perfil.
+ *
+ * Da menor para a maior prioridade: os padroes do perfil, o arquivo
+ * pm73.properties do classpath, o arquivo pm73-&lt;perfil&gt;.properties,
+ * variaveis de ambiente (hibernate.show_sql vira HIBERNATE_SHOW_SQL) e por
+ * fim as propriedades de sistema com prefixo hibernate. ou pm73.
+ *
+ * As variaveis valem para qualquer chave ja definida ou declarada pelo
+ * Hibernate (AvailableSettings) e pelas classes de infra, mesmo que o
+ * perfil nao a defina. Uma variavel HIBERNATE_* ou PM73_* que nao
+ * corresponde a nenhuma dessas chaves e ignorada com um aviso no log
+ * (WARNING); para outras chaves use a propriedade de sistema.
+ *
+ * O perfil ativo vem de -Dpm73.perfil ou PM73_PERFIL e, na falta dos dois,
+ * e o TESTE.
+ */
+public class ConfiguracaoDoBanco {
+
+	public static final String PERFIL = "pm73.perfil";
+
+	private static final Logger log = Logger.getLogger(ConfiguracaoDoBanco.class.getName());
+
+	// alem das chaves do perfil, as do Hibernate e as pm73.* destas classes
+	private static final Class<?>[] CLASSES_COM_CHAVES = { AvailableSettings.class, PoolDeConexoes.class,
+			FabricaDeRegioesDeCache.class, LogDeConsultasLentas.class, ArmazenamentoDoBanco.class };
+
+	private final Perfil perfil;
+	private final Properties propriedades;
+
+	public ConfiguracaoDoBanco(Perfil perfil) {
+		this(perfil, System.getenv(), System.getProperties());
+	}
+
+	ConfiguracaoDoBanco(Perfil perfil, Map<String, String> ambiente, Properties sistema) {
+		this.perfil = perfil;
+		this.propriedades = perfil.getPropriedades();
+
+		carregaDoClasspath("/pm73.properties");
+		carregaDoClasspath("/pm73-" + perfil.name().toLowerCase() + ".properties");
+		aplicaAmbiente(ambiente);
+		aplicaSistema(sistema);
+	}
+
+	public static ConfiguracaoDoBanco doPerfilAtivo() {
+		return new ConfiguracaoDoBanco(perfilAtivo(System.getenv(), System.getProperties()));
+	}
+
+	static Perfil perfilAtivo(Map<String, String> ambiente, Properties sistema) {
+		String nome = sistema.getProperty(PERFIL);
+		if (nome == null) {
+			nome = ambiente.get(nomeNoAmbiente(PERFIL));
+		}
+		return nome == null ? Perfil.TESTE : Perfil.porNome(nome);
+	}
+
+	public Perfil getPerfil() {
+		return perfil;
+	}
+
+	public Properties getPropriedades() {
+		Properties copia = new Properties();
+		copia.putAll(propriedades);
+		return copia;
+	}
+
+	public String get(String chave) {
+		return propriedades.getProperty(chave);
+	}
+
+	private void carregaDoClasspath(String arquivo) {
+		InputStream entrada = ConfiguracaoDoBanco.class.getResourceAsStream(arquivo);
+		if (entrada == null) return;
+
+		try {
+			try {
+				propriedades.load(entrada);
+			} finally {
+				entrada.close();
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Nao foi possivel ler " + arquivo, e);
+		}
+	}
+
+	private void aplicaAmbiente(Map<String, String> ambiente) {
+		Map<String, String> chavesPorVariavel = new HashMap<String, String>();
+		for (String chave : chavesConhecidas()) {
+			chavesPorVariavel.put(nomeNoAmbiente(chave), chave);
+		}
+
+		for (Map.Entry<String, String> variavel : ambiente.entrySet()) {
+			String nome = variavel.getKey();
+			if (!(nome.startsWith("HIBERNATE_") || nome.startsWith("PM73_")) || nome.equals(nomeNoAmbiente(PERFIL))) {
+				continue;
+			}
+			// o _ do nome pode ter sido . ou _ na chave, entao so da para voltar as chaves conhecidas
+			String chave = chavesPorVariavel.get(nome);
+			if (chave == null) {
+				// o ambiente nao e controlado pela aplicacao (HIBERNATE_HOME, chaves de versoes futuras)
+				log.warning("Variavel de ambiente " + nome
+						+ " ignorada: nao corresponde a nenhuma propriedade conhecida; use -D com o nome da propriedade");
+				continue;
+			}
+			propriedades.setProperty(chave, variavel.getValue());
+		}
+	}
+
+	private Set<String> chavesConhecidas() {
+		Set<String> chaves = new HashSet<String>(propriedades.stringPropertyNames());
+		for (Class<?> classe : CLASSES_COM_CHAVES) {
+			for (Field campo : classe.getDeclaredFields()) {
+				int modificadores = campo.getModifiers();
+				if (!Modifier.isPublic(modificadores) || !Modifier.isStatic(modificadores)
+						|| campo.getType() != String.class) continue;
+				try {
+					String chave = (String) campo.get(null);
+					if (chave.startsWith("hibernate.") || chave.startsWith("pm73.")) {
+						chaves.add(chave);
+					}
+				} catch (IllegalAccessException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		}
+		return chaves;
+	}
+
+	private void aplicaSistema(Properties sistema) {
+		for (String chave : sistema.stringPropertyNames()) {
+			if ((chave.startsWith("hibernate.") || chave.startsWith("pm73.")) && !chave.equals(PERFIL)) {
+				propriedades.setProperty(chave, sistema.getProperty(chave));
+			}
+		}
+	}
+
+	private static String nomeNoAmbiente(String chave) {
+		return chave.toUpperCase().replace('.', '_');
+	}
+}
@@ -0,0 +1,67 @@
+package br.com.pm73.infra;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Um formato de statement que ja passou do limite do LogDeConsultasLentas,
+ * com o plano capturado na primeira vez e as ocorrencias desde entao.
+ */
+public class ConsultaLenta {
+
+	private final String formato;
+	private final String plano;
+	private final String resumoDoPlano;
+	private final AtomicLong ocorrencias = new AtomicLong();
+	private final AtomicLong maiorDuracaoEmNanos = new AtomicLong();
+	private final AtomicLong maiorQuantidadeDeLinhas = new AtomicLong();
+
+	ConsultaLenta(String formato, String plano, String resumoDoPlano) {
+		this.formato = formato;
+		this.plano = plano;
+		this.resumoDoPlano = resumoDoPlano;
+	}
+
+	void registra(long nanos, long linhas) {
+		ocorrencias.incrementAndGet();
+		maximo(maiorDuracaoEmNanos, nanos);
+		maximo(maiorQuantidadeDeLinhas, linhas);
+	}
+
+	private static void maximo(AtomicLong atual, long valor) {
+		long maior = atual.get();
+		while(valor > maior && !atual.compareAndSet(maior, valor)) {
+			maior = atual.get();
+		}
+	}
+
+	/** Identifica o formato nas linhas do log. */
+	public String getId() {
+		return Integer.toHexString(formato.hashCode());
+	}
+
+	public String getFormato() {
+		return formato;
+	}
+
+	/** Saida do EXPLAIN PLAN FOR do HSQLDB. */
+	public String getPlano() {
+		return plano;
+	}
+
+	/** Acesso a cada tabela, como "LEILAO: FULL SCAN". */
+	public String getResumoDoPlano() {
+		return resumoDoPlano;
+	}
+
+	public long getOcorrencias() {
+		return ocorrencias.get();
+	}
+
+	public double getMaiorDuracaoEmMillis() {
+		return maiorDuracaoEmNanos.get() / 1000000.0;
+	}
+
+	public long getMaiorQuantidadeDeLinhas() {
+		return maiorQuantidadeDeLinhas.get();
+	}
+}
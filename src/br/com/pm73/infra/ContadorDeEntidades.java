@@ -0,0 +1,21 @@
+package br.com.pm73.infra;
+
+import java.io.Serializable;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.type.Type;
+
+/**
+ * Conta, para a Instrumentacao, cada entidade que o Hibernate monta, venha
+ * ela do banco ou do cache de segundo nivel.
+ */
+public class ContadorDeEntidades extends EmptyInterceptor {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public boolean onLoad(Object entidade, Serializable id, Object[] estado, String[] propriedades, Type[] tipos) {
+		Instrumentacao.entidadeCarregada();
+		return false;
+	}
+}
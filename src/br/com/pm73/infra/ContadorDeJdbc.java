@@ -0,0 +1,152 @@
+package br.com.pm73.infra;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * Embrulha as conexoes do pool para contar, na thread corrente, os
+ * statements executados e as linhas lidas; a Instrumentacao atribui esses
+ * numeros ao metodo de DAO que estiver rodando. Tambem cronometra cada
+ * execucao, do execute ate a ultima linha lida (ou o close), e passa as
+ * lentas, com os parametros, para o LogDeConsultasLentas.
+ */
+class ContadorDeJdbc implements InvocationHandler {
+
+	private final Object alvo;
+	private final Execucao execucao;
+
+	private ContadorDeJdbc(Object alvo, Execucao execucao) {
+		this.alvo = alvo;
+		this.execucao = execucao;
+	}
+
+	static Connection conta(Connection conexao, LogDeConsultasLentas consultasLentas) {
+		return embrulha(Connection.class, conexao, new Execucao(null, consultasLentas));
+	}
+
+	public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+		String nome = metodo.getName();
+		if(alvo instanceof ResultSet) return noResultSet(nome, metodo, args);
+		if(alvo instanceof Connection) return naConexao(nome, metodo, args);
+
+		if(nome.startsWith("execute")) {
+			Instrumentacao.statementExecutado();
+			execucao.inicia(args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null);
+		} else if(nome.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+			execucao.parametro((Integer) args[0], nome.equals("setNull") ? null : args[1]);
+		} else if(nome.equals("clearParameters")) {
+			execucao.limpaParametros();
+		} else if(nome.equals("close")) {
+			execucao.termina();
+		}
+
+		Object resultado = chama(metodo, args);
+		if(resultado instanceof ResultSet) return embrulha(ResultSet.class, resultado, execucao);
+		if(nome.equals("executeUpdate")) {
+			execucao.linhas(((Number) resultado).longValue());
+			execucao.termina();
+		} else if(nome.equals("executeBatch")) {
+			for(int linhas : (int[]) resultado) execucao.linhas(Math.max(linhas, 0));
+			execucao.termina();
+		}
+		return resultado;
+	}
+
+	private Object naConexao(String nome, Method metodo, Object[] args) throws Throwable {
+		Object resultado = chama(metodo, args);
+		if(!(resultado instanceof Statement)) return resultado;
+
+		// o SQL do prepareStatement/prepareCall; o de um Statement vem no execute
+		String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+		Execucao doStatement = new Execucao(sql, execucao.consultasLentas);
+		if(resultado instanceof CallableStatement) return embrulha(CallableStatement.class, resultado, doStatement);
+		if(resultado instanceof PreparedStatement) return embrulha(PreparedStatement.class, resultado, doStatement);
+		return embrulha(Statement.class, resultado, doStatement);
+	}
+
+	private Object noResultSet(String nome, Method metodo, Object[] args) throws Throwable {
+		Object resultado = chama(metodo, args);
+		if(nome.equals("next")) {
+			if(Boolean.TRUE.equals(resultado)) {
+				Instrumentacao.linhaLida();
+				execucao.linhas(1);
+			} else {
+				execucao.termina();
+			}
+		} else if(nome.equals("close")) {
+			execucao.termina();
+		}
+		return resultado;
+	}
+
+	private Object chama(Method metodo, Object[] args) throws Throwable {
+		try {
+			return metodo.invoke(alvo, args);
+		} catch(InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static <T> T embrulha(Class<T> tipo, Object alvo, Execucao execucao) {
+		return tipo.cast(Proxy.newProxyInstance(ContadorDeJdbc.class.getClassLoader(),
+				new Class<?>[] { tipo }, new ContadorDeJdbc(alvo, execucao)));
+	}
+
+	// usada por uma thread de cada vez, como o proprio Statement
+	private static class Execucao {
+		private final LogDeConsultasLentas consultasLentas;
+		private String sql;
+		private Object[] parametros = new Object[0];
+		private int quantidadeDeParametros;
+		private long inicio;
+		private long linhas;
+		private boolean rodando;
+
+		Execucao(String sql, LogDeConsultasLentas consultasLentas) {
+			this.sql = sql;
+			this.consultasLentas = consultasLentas;
+		}
+
+		void inicia(String sqlDoExecute) {
+			if(consultasLentas == null) return;
+			if(sqlDoExecute != null) sql = sqlDoExecute;
+			inicio = System.nanoTime();
+			linhas = 0;
+			rodando = true;
+		}
+
+		void parametro(int indice, Object valor) {
+			if(consultasLentas == null) return;
+			if(indice > parametros.length) parametros = Arrays.copyOf(parametros, Math.max(indice, 8));
+			parametros[indice - 1] = valor;
+			quantidadeDeParametros = Math.max(quantidadeDeParametros, indice);
+		}
+
+		void limpaParametros() {
+			Arrays.fill(parametros, null);
+			quantidadeDeParametros = 0;
+		}
+
+		void linhas(long quantidade) {
+			linhas += quantidade;
+		}
+
+		void termina() {
+			if(!rodando) return;
+			rodando = false;
+			long nanos = System.nanoTime() - inicio;
+			if(sql != null && consultasLentas.deveRegistrar(sql, nanos)) {
+				consultasLentas.registra(sql, Arrays.toString(Arrays.copyOf(parametros, quantidadeDeParametros)),
+						nanos, linhas);
+			}
+		}
+	}
+}
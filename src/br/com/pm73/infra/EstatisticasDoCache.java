@@ -0,0 +1,57 @@
+package br.com.pm73.infra;
+
+import org.hibernate.stat.Statistics;
+
+/**
+ * Acertos e falhas do cache de entidades e do cache de consultas,
+ * acumulados desde a subida da SessionFactory.
+ */
+public class EstatisticasDoCache {
+
+	private final long acertosDeEntidades;
+	private final long falhasDeEntidades;
+	private final long acertosDeConsultas;
+	private final long falhasDeConsultas;
+
+	public EstatisticasDoCache(Statistics estatisticas) {
+		this.acertosDeEntidades = estatisticas.getSecondLevelCacheHitCount();
+		this.falhasDeEntidades = estatisticas.getSecondLevelCacheMissCount();
+		this.acertosDeConsultas = estatisticas.getQueryCacheHitCount();
+		this.falhasDeConsultas = estatisticas.getQueryCacheMissCount();
+	}
+
+	public long getAcertosDeEntidades() {
+		return acertosDeEntidades;
+	}
+
+	public long getFalhasDeEntidades() {
+		return falhasDeEntidades;
+	}
+
+	public long getAcertosDeConsultas() {
+		return acertosDeConsultas;
+	}
+
+	public long getFalhasDeConsultas() {
+		return falhasDeConsultas;
+	}
+
+	public double getTaxaDeAcertoDeEntidades() {
+		return taxa(acertosDeEntidades, falhasDeEntidades);
+	}
+
+	public double getTaxaDeAcertoDeConsultas() {
+		return taxa(acertosDeConsultas, falhasDeConsultas);
+	}
+
+	private static double taxa(long acertos, long falhas) {
+		long total = acertos + falhas;
+		return total == 0 ? 0.0 : (double) acertos / total;
+	}
+
+	@Override
+	public String toString() {
+		return "cache[entidades=" + acertosDeEntidades + "/" + (acertosDeEntidades + falhasDeEntidades)
+				+ ", consultas=" + acertosDeConsultas + "/" + (acertosDeConsultas + falhasDeConsultas) + "]";
+	}
+}
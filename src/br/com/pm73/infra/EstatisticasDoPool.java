@@ -0,0 +1,85 @@
+package br.com.pm73.infra;
+
+/**
+ * Fotografia das metricas de uso do PoolDeConexoes num dado instante.
+ */
+public class EstatisticasDoPool {
+
+	private final int tamanhoMaximo;
+	private final int emUso;
+	private final int ociosas;
+	private final int threadsEsperando;
+	private final long emprestimos;
+	private final long esperasComTimeout;
+	private final long conexoesCriadas;
+	private final long conexoesDescartadas;
+	private final long tempoTotalDeEsperaEmNanos;
+	private final long maiorEsperaEmNanos;
+
+	public EstatisticasDoPool(int tamanhoMaximo, int emUso, int ociosas, int threadsEsperando,
+			long emprestimos, long esperasComTimeout, long conexoesCriadas, long conexoesDescartadas,
+			long tempoTotalDeEsperaEmNanos, long maiorEsperaEmNanos) {
+		this.tamanhoMaximo = tamanhoMaximo;
+		this.emUso = emUso;
+		this.ociosas = ociosas;
+		this.threadsEsperando = threadsEsperando;
+		this.emprestimos = emprestimos;
+		this.esperasComTimeout = esperasComTimeout;
+		this.conexoesCriadas = conexoesCriadas;
+		this.conexoesDescartadas = conexoesDescartadas;
+		this.tempoTotalDeEsperaEmNanos = tempoTotalDeEsperaEmNanos;
+		this.maiorEsperaEmNanos = maiorEsperaEmNanos;
+	}
+
+	public int getTamanhoMaximo() {
+		return tamanhoMaximo;
+	}
+
+	public int getEmUso() {
+		return emUso;
+	}
+
+	public int getOciosas() {
+		return ociosas;
+	}
+
+	public int getThreadsEsperando() {
+		return threadsEsperando;
+	}
+
+	public long getEmprestimos() {
+		return emprestimos;
+	}
+
+	public long getEsperasComTimeout() {
+		return esperasComTimeout;
+	}
+
+	public long getConexoesCriadas() {
+		return conexoesCriadas;
+	}
+
+	public long getConexoesDescartadas() {
+		return conexoesDescartadas;
+	}
+
+	public double getEsperaMediaEmMillis() {
+		long pedidos = emprestimos + esperasComTimeout;
+		if (pedidos == 0) return 0.0;
+		return tempoTotalDeEsperaEmNanos / 1000000.0 / pedidos;
+	}
+
+	public double getMaiorEsperaEmMillis() {
+		return maiorEsperaEmNanos / 1000000.0;
+	}
+
+	@Override
+	public String toString() {
+		return "pool[maximo=" + tamanhoMaximo + ", emUso=" + emUso + ", ociosas=" + ociosas
+				+ ", esperando=" + threadsEsperando + ", emprestimos=" + emprestimos
+				+ ", timeouts=" + esperasComTimeout + ", criadas=" + conexoesCriadas
+				+ ", descartadas=" + conexoesDescartadas
+				+ ", esperaMediaMs=" + getEsperaMediaEmMillis()
+				+ ", maiorEsperaMs=" + getMaiorEsperaEmMillis() + "]";
+	}
+}
@@ -0,0 +1,72 @@
+package br.com.pm73.infra;
+
+import java.util.Properties;
+
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.config.Configuration;
+import net.sf.ehcache.store.MemoryStoreEvictionPolicy;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.ehcache.EhCacheRegionFactory;
+import org.hibernate.cache.internal.StandardQueryCache;
+import org.hibernate.cache.spi.UpdateTimestampsCache;
+import org.hibernate.cfg.Settings;
+
+/**
+ * Cache de segundo nivel em memoria (Ehcache) configurado pelas
+ * propriedades do perfil em vez de um ehcache.xml:
+ *
+ * pm73.cache.tamanho / ttl / politica valem para as entidades;
+ * pm73.cache.consultas.tamanho / ttl / politica para o cache de consultas.
+ * A politica e LRU, LFU ou FIFO. A regiao de timestamps, que diz se uma
+ * consulta em cache ainda vale, nunca expira.
+ */
+public class FabricaDeRegioesDeCache extends EhCacheRegionFactory {
+
+	public static final String TAMANHO = "pm73.cache.tamanho";
+	public static final String TTL = "pm73.cache.ttl";
+	public static final String POLITICA = "pm73.cache.politica";
+	public static final String TAMANHO_DAS_CONSULTAS = "pm73.cache.consultas.tamanho";
+	public static final String TTL_DAS_CONSULTAS = "pm73.cache.consultas.ttl";
+	public static final String POLITICA_DAS_CONSULTAS = "pm73.cache.consultas.politica";
+
+	private static final long serialVersionUID = 1L;
+
+	public FabricaDeRegioesDeCache() {
+	}
+
+	public FabricaDeRegioesDeCache(Properties propriedades) {
+		super(propriedades);
+	}
+
+	@Override
+	public void start(Settings settings, Properties propriedades) throws CacheException {
+		this.settings = settings;
+
+		Configuration configuracao = new Configuration();
+		configuracao.setUpdateCheck(false);
+		configuracao.addDefaultCache(regiao("default", propriedades, TAMANHO, TTL, POLITICA));
+		configuracao.addCache(regiao(StandardQueryCache.class.getName(), propriedades,
+				TAMANHO_DAS_CONSULTAS, TTL_DAS_CONSULTAS, POLITICA_DAS_CONSULTAS));
+		configuracao.addCache(new CacheConfiguration(UpdateTimestampsCache.REGION_NAME, 0)
+				.eternal(true)
+				.overflowToDisk(false));
+
+		manager = new CacheManager(configuracao);
+		mbeanRegistrationHelper.registerMBean(manager, propriedades);
+	}
+
+	private static CacheConfiguration regiao(String nome, Properties propriedades,
+			String chaveDoTamanho, String chaveDoTtl, String chaveDaPolitica) {
+		int tamanho = Integer.parseInt(propriedades.getProperty(chaveDoTamanho, "10000"));
+		long ttl = Long.parseLong(propriedades.getProperty(chaveDoTtl, "300"));
+		String politica = propriedades.getProperty(chaveDaPolitica, "LRU");
+
+		return new CacheConfiguration(nome, tamanho)
+				.eternal(false)
+				.timeToLiveSeconds(ttl)
+				.memoryStoreEvictionPolicy(MemoryStoreEvictionPolicy.fromString(politica))
+				.overflowToDisk(false);
+	}
+}
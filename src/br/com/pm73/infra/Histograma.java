@@ -0,0 +1,98 @@
+package br.com.pm73.infra;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de valores nao negativos no estilo do HdrHistogram: cada
+ * potencia de 2 e dividida em SUBFAIXAS faixas iguais, entao qualquer
+ * percentil sai com erro relativo menor que 1/SUBFAIXAS (6,25%) usando
+ * memoria fixa. Registrar e so um incremento atomico, sem lock, e pode ser
+ * feito por varias threads ao mesmo tempo.
+ */
+public class Histograma {
+
+	private static final int BITS_DE_PRECISAO = 4;
+	static final int SUBFAIXAS = 1 << BITS_DE_PRECISAO;
+
+	private final AtomicLongArray contagens = new AtomicLongArray(64 * SUBFAIXAS);
+	private final LongAdder quantidade = new LongAdder();
+	private final LongAdder soma = new LongAdder();
+	private final AtomicLong maximo = new AtomicLong();
+
+	public void registra(long valor) {
+		if(valor < 0) valor = 0;
+		contagens.incrementAndGet(faixa(valor));
+		quantidade.increment();
+		soma.add(valor);
+
+		long maior = maximo.get();
+		while(valor > maior && !maximo.compareAndSet(maior, valor)) {
+			maior = maximo.get();
+		}
+	}
+
+	public long getQuantidade() {
+		return quantidade.sum();
+	}
+
+	public double getMedia() {
+		long n = quantidade.sum();
+		return n == 0 ? 0.0 : soma.sum() / (double) n;
+	}
+
+	public long getMaximo() {
+		return maximo.get();
+	}
+
+	/**
+	 * O menor valor que cobre a fracao pedida dos registros (0.99 para o
+	 * p99), arredondado para cima ate o fim da faixa; zero se vazio.
+	 */
+	public long percentil(double fracao) {
+		long[] copia = new long[contagens.length()];
+		long total = 0;
+		for(int i = 0; i < copia.length; i++) {
+			copia[i] = contagens.get(i);
+			total += copia[i];
+		}
+		if(total == 0) return 0;
+
+		long alvo = Math.max(1, (long) Math.ceil(fracao * total));
+		long acumulado = 0;
+		for(int i = 0; i < copia.length; i++) {
+			acumulado += copia[i];
+			if(acumulado >= alvo) {
+				return Math.min(limiteSuperior(i), maximo.get());
+			}
+		}
+		return maximo.get();
+	}
+
+	public void zera() {
+		for(int i = 0; i < contagens.length(); i++) {
+			contagens.set(i, 0);
+		}
+		quantidade.reset();
+		soma.reset();
+		maximo.set(0);
+	}
+
+	// valores menores que SUBFAIXAS tem faixa propria; os demais caem na
+	// faixa dada pelo expoente e pelos BITS_DE_PRECISAO bits seguintes
+	static int faixa(long valor) {
+		if(valor < SUBFAIXAS) return (int) valor;
+		int expoente = 63 - Long.numberOfLeadingZeros(valor);
+		int subfaixa = (int) (valor >>> (expoente - BITS_DE_PRECISAO)) & (SUBFAIXAS - 1);
+		return (expoente - BITS_DE_PRECISAO + 1) * SUBFAIXAS + subfaixa;
+	}
+
+	static long limiteSuperior(int faixa) {
+		if(faixa < SUBFAIXAS) return faixa;
+		int expoente = faixa / SUBFAIXAS + BITS_DE_PRECISAO - 1;
+		long largura = 1L << (expoente - BITS_DE_PRECISAO);
+		long inicio = (1L << expoente) | ((faixa % SUBFAIXAS) * largura);
+		return inicio + largura - 1;
+	}
+}
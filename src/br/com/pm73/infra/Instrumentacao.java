@@ -0,0 +1,276 @@
+package br.com.pm73.infra;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import javassist.util.proxy.MethodFilter;
+import javassist.util.proxy.MethodHandler;
+import javassist.util.proxy.ProxyFactory;
+import javassist.util.proxy.ProxyObject;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+/**
+ * Medicoes por metodo de DAO: chamadas, histograma de latencia, statements
+ * JDBC, linhas lidas e entidades carregadas.
+ *
+ * instrumenta() devolve uma subclasse do DAO (gerada pelo javassist, como os
+ * proxies do Hibernate) que mede cada metodo publico. Os statements e as
+ * linhas vem das conexoes do pool, embrulhadas pelo ContadorDeJdbc, e as
+ * entidades do ContadorDeEntidades; os tres somam em contadores da propria
+ * thread, entao as medicoes de threads diferentes nao se misturam. Um metodo
+ * que chama outro metodo publico do mesmo DAO inclui o que o outro fez.
+ *
+ * O custo por chamada e de dois System.nanoTime e alguns incrementos sem
+ * lock, pequeno o bastante para ficar sempre ligado. Os numeros podem ser
+ * lidos por getMetricas(), como texto por retrato() ou pelo JMX em
+ * br.com.pm73:type=Instrumentacao.
+ */
+public class Instrumentacao {
+
+	public static final String NOME_NO_JMX = "br.com.pm73:type=Instrumentacao";
+
+	private static final ConcurrentMap<String, Medidor> medidores = new ConcurrentHashMap<String, Medidor>();
+	private static final ConcurrentMap<Class<?>, Class<?>> proxies = new ConcurrentHashMap<Class<?>, Class<?>>();
+	private static final ThreadLocal<Contadores> contadores = new ThreadLocal<Contadores>() {
+		@Override
+		protected Contadores initialValue() {
+			return new Contadores();
+		}
+	};
+	private static volatile SessionFactory fabrica;
+
+	private Instrumentacao() {
+	}
+
+	/**
+	 * Um DAO do tipo pedido, criado com a sessao, que mede os seus metodos
+	 * publicos. O tipo precisa ter um construtor publico que recebe Session.
+	 */
+	public static <T> T instrumenta(Class<T> tipo, Session session) {
+		try {
+			Object dao = proxy(tipo).getConstructor(Session.class).newInstance(session);
+			((ProxyObject) dao).setHandler(new Medicao(tipo));
+			return tipo.cast(dao);
+		} catch(ReflectiveOperationException e) {
+			throw new HibernateException("Nao foi possivel instrumentar " + tipo.getName(), e);
+		}
+	}
+
+	/** As metricas de cada metodo ja chamado, do que mais tomou tempo ao que menos tomou. */
+	public static List<MetricasDoMetodo> getMetricas() {
+		List<MetricasDoMetodo> metricas = new ArrayList<MetricasDoMetodo>();
+		for(Medidor medidor : medidores.values()) {
+			metricas.add(medidor.retrato());
+		}
+		Collections.sort(metricas, new Comparator<MetricasDoMetodo>() {
+			public int compare(MetricasDoMetodo uma, MetricasDoMetodo outra) {
+				return Double.compare(outra.getTempoTotalEmMillis(), uma.getTempoTotalEmMillis());
+			}
+		});
+		return metricas;
+	}
+
+	public static MetricasDoMetodo getMetricas(String metodo) {
+		Medidor medidor = medidores.get(metodo);
+		return medidor == null ? null : medidor.retrato();
+	}
+
+	/**
+	 * As metricas em texto, uma linha por metodo, precedidas pelos totais do
+	 * Statistics do Hibernate quando a SessionFactory estiver no ar.
+	 */
+	public static String retrato() {
+		StringBuilder texto = new StringBuilder();
+		SessionFactory atual = fabrica;
+		if(atual != null && !atual.isClosed()) {
+			Statistics estatisticas = atual.getStatistics();
+			texto.append(String.format(Locale.ROOT,
+					"hibernate: %d statements, %d entidades carregadas, %d consultas, consulta mais lenta %dms: %s%n",
+					estatisticas.getPrepareStatementCount(), estatisticas.getEntityLoadCount(),
+					estatisticas.getQueryExecutionCount(), estatisticas.getQueryExecutionMaxTime(),
+					estatisticas.getQueryExecutionMaxTimeQueryString()));
+		}
+		texto.append(String.format(Locale.ROOT, "%-48s %9s %7s %10s %10s %10s %10s %10s %9s %10s %10s%n",
+				"metodo", "chamadas", "erros", "media(us)", "p50(us)", "p90(us)", "p99(us)", "max(us)",
+				"sql", "linhas", "entidades"));
+		for(MetricasDoMetodo metricas : getMetricas()) {
+			texto.append(metricas).append(String.format("%n"));
+		}
+		return texto.toString();
+	}
+
+	public static void zera() {
+		for(Medidor medidor : medidores.values()) {
+			medidor.zera();
+		}
+	}
+
+	/**
+	 * Publica a Instrumentacao no JMX (uma vez so) e passa a usar o
+	 * Statistics da SessionFactory informada no retrato.
+	 */
+	public static synchronized void registraNoJmx(SessionFactory sessionFactory) {
+		fabrica = sessionFactory;
+		try {
+			MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+			ObjectName nome = new ObjectName(NOME_NO_JMX);
+			if(!servidor.isRegistered(nome)) {
+				servidor.registerMBean(new Publicacao(), nome);
+			}
+		} catch(JMException e) {
+			throw new HibernateException("Nao foi possivel registrar a instrumentacao no JMX", e);
+		}
+	}
+
+	static void statementExecutado() {
+		contadores.get().statements++;
+	}
+
+	static void linhaLida() {
+		contadores.get().linhas++;
+	}
+
+	static void entidadeCarregada() {
+		contadores.get().entidades++;
+	}
+
+	private static Class<?> proxy(final Class<?> tipo) {
+		Class<?> proxy = proxies.get(tipo);
+		if(proxy == null) {
+			ProxyFactory fabricaDeProxies = new ProxyFactory();
+			fabricaDeProxies.setSuperclass(tipo);
+			fabricaDeProxies.setFilter(new MethodFilter() {
+				public boolean isHandled(Method metodo) {
+					return metodo.getDeclaringClass() == tipo && Modifier.isPublic(metodo.getModifiers());
+				}
+			});
+			proxies.putIfAbsent(tipo, fabricaDeProxies.createClass());
+			proxy = proxies.get(tipo);
+		}
+		return proxy;
+	}
+
+	private static Medidor medidor(Class<?> tipo, Method metodo) {
+		StringBuilder nome = new StringBuilder(tipo.getSimpleName()).append('.').append(metodo.getName()).append('(');
+		Class<?>[] parametros = metodo.getParameterTypes();
+		for(int i = 0; i < parametros.length; i++) {
+			if(i > 0) nome.append(", ");
+			nome.append(parametros[i].getSimpleName());
+		}
+		String chave = nome.append(')').toString();
+
+		Medidor medidor = medidores.get(chave);
+		if(medidor == null) {
+			medidores.putIfAbsent(chave, new Medidor(chave));
+			medidor = medidores.get(chave);
+		}
+		return medidor;
+	}
+
+	// somados so pela propria thread, sem sincronizacao
+	private static class Contadores {
+		long statements;
+		long linhas;
+		long entidades;
+	}
+
+	private static class Medicao implements MethodHandler {
+		private final Class<?> tipo;
+		private final ConcurrentMap<Method, Medidor> porMetodo = new ConcurrentHashMap<Method, Medidor>();
+
+		Medicao(Class<?> tipo) {
+			this.tipo = tipo;
+		}
+
+		public Object invoke(Object dao, Method metodo, Method original, Object[] args) throws Throwable {
+			Medidor medidor = porMetodo.get(metodo);
+			if(medidor == null) {
+				medidor = medidor(tipo, metodo);
+				porMetodo.put(metodo, medidor);
+			}
+
+			Contadores daThread = contadores.get();
+			long statements = daThread.statements;
+			long linhas = daThread.linhas;
+			long entidades = daThread.entidades;
+			boolean erro = true;
+			long inicio = System.nanoTime();
+			try {
+				Object resultado = original.invoke(dao, args);
+				erro = false;
+				return resultado;
+			} catch(InvocationTargetException e) {
+				throw e.getCause();
+			} finally {
+				medidor.registra(System.nanoTime() - inicio, erro, daThread.statements - statements,
+						daThread.linhas - linhas, daThread.entidades - entidades);
+			}
+		}
+	}
+
+	private static class Medidor {
+		private final String metodo;
+		private final Histograma latencias = new Histograma();
+		private final LongAdder erros = new LongAdder();
+		private final LongAdder statements = new LongAdder();
+		private final LongAdder linhas = new LongAdder();
+		private final LongAdder entidades = new LongAdder();
+
+		Medidor(String metodo) {
+			this.metodo = metodo;
+		}
+
+		void registra(long nanos, boolean erro, long statements, long linhas, long entidades) {
+			latencias.registra(nanos);
+			if(erro) this.erros.increment();
+			this.statements.add(statements);
+			this.linhas.add(linhas);
+			this.entidades.add(entidades);
+		}
+
+		MetricasDoMetodo retrato() {
+			return new MetricasDoMetodo(metodo, latencias.getQuantidade(), erros.sum(), latencias,
+					statements.sum(), linhas.sum(), entidades.sum());
+		}
+
+		void zera() {
+			latencias.zera();
+			erros.reset();
+			statements.reset();
+			linhas.reset();
+			entidades.reset();
+		}
+	}
+
+	private static class Publicacao implements InstrumentacaoMXBean {
+		public List<MetricasDoMetodo> getMetodos() {
+			return getMetricas();
+		}
+
+		public String getRetrato() {
+			return retrato();
+		}
+
+		public void zera() {
+			Instrumentacao.zera();
+		}
+	}
+}
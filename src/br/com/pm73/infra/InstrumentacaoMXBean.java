@@ -0,0 +1,15 @@
+package br.com.pm73.infra;
+
+import java.util.List;
+
+/**
+ * O que a Instrumentacao publica no JMX, em br.com.pm73:type=Instrumentacao.
+ */
+public interface InstrumentacaoMXBean {
+
+	List<MetricasDoMetodo> getMetodos();
+
+	String getRetrato();
+
+	void zera();
+}
@@ -0,0 +1,211 @@
+package br.com.pm73.infra;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.hibernate.service.jdbc.connections.spi.ConnectionProvider;
+
+/**
+ * Registra no log (java.util.logging, em br.com.pm73.infra.LogDeConsultasLentas)
+ * os statements que passam de pm73.consultas_lentas.limite_ms, do execute ate
+ * a ultima linha lida, com os parametros, o tempo, as linhas e o EXPLAIN PLAN
+ * do HSQLDB.
+ *
+ * Quem executa o statement so enfileira; o EXPLAIN e o log rodam numa
+ * thread propria, e com a fila cheia o registro e descartado (e contado).
+ * O plano sai uma vez por formato do statement, o SQL com literais e listas
+ * do IN trocados por ?; as ocorrencias seguintes so citam o formato e o
+ * resumo do acesso a cada tabela (FULL SCAN ou o indice usado). Guardados
+ * MAXIMO_DE_FORMATOS formatos, os novos so sao contados e registrados, sem
+ * EXPLAIN.
+ */
+public class LogDeConsultasLentas {
+
+	public static final String LIMITE = "pm73.consultas_lentas.limite_ms";
+
+	private static final Logger log = Logger.getLogger(LogDeConsultasLentas.class.getName());
+	private static final int CAPACIDADE_DA_FILA = 1000;
+	private static final int MAXIMO_DE_FORMATOS = 1000;
+
+	private static final Pattern TEXTOS = Pattern.compile("'(?:[^']|'')*'");
+	private static final Pattern NUMEROS = Pattern.compile("\\b\\d+(\\.\\d+)?\\b");
+	private static final Pattern LISTAS = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+	private static final Pattern ESPACOS = Pattern.compile("\\s+");
+	private static final Pattern ACESSOS = Pattern.compile("table=(\\S+)\\s+alias=\\S+\\s+cardinality=\\S+\\s+access=([^\\n]+)");
+
+	private final ConnectionProvider conexoes;
+	private final ThreadPoolExecutor executor;
+	private final ConcurrentMap<String, ConsultaLenta> porFormato = new ConcurrentHashMap<String, ConsultaLenta>();
+	private final AtomicLong descartadas = new AtomicLong();
+	private final AtomicLong semPlano = new AtomicLong();
+	private final int maximoDeFormatos;
+	private volatile long limiteEmNanos;
+
+	/**
+	 * @param limiteEmMillis negativo desliga o log
+	 */
+	public LogDeConsultasLentas(ConnectionProvider conexoes, long limiteEmMillis) {
+		this(conexoes, limiteEmMillis, MAXIMO_DE_FORMATOS);
+	}
+
+	LogDeConsultasLentas(ConnectionProvider conexoes, long limiteEmMillis, int maximoDeFormatos) {
+		this.conexoes = conexoes;
+		this.maximoDeFormatos = maximoDeFormatos;
+		setLimiteEmMillis(limiteEmMillis);
+		this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(CAPACIDADE_DA_FILA), new ThreadFactory() {
+					public Thread newThread(Runnable tarefa) {
+						Thread thread = new Thread(tarefa, "consultas-lentas");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	public void setLimiteEmMillis(long limiteEmMillis) {
+		this.limiteEmNanos = limiteEmMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(limiteEmMillis);
+	}
+
+	public long getLimiteEmMillis() {
+		return limiteEmNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(limiteEmNanos);
+	}
+
+	/** Os formatos ja registrados, cada um com o seu plano e ocorrencias. */
+	public List<ConsultaLenta> getConsultas() {
+		return new ArrayList<ConsultaLenta>(porFormato.values());
+	}
+
+	/** Registros perdidos porque a fila estava cheia. */
+	public long getDescartadas() {
+		return descartadas.get();
+	}
+
+	/**
+	 * Registros de formatos novos que chegaram com MAXIMO_DE_FORMATOS ja
+	 * guardados: foram para o log, mas sem EXPLAIN.
+	 */
+	public long getSemPlano() {
+		return semPlano.get();
+	}
+
+	/** Espera o que ja foi enfileirado ser registrado. */
+	public void esperaPendentes(long timeoutEmMillis) throws InterruptedException, TimeoutException {
+		try {
+			executor.submit(new Runnable() {
+				public void run() {
+				}
+			}).get(timeoutEmMillis, TimeUnit.MILLISECONDS);
+		} catch(ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	public void para() {
+		executor.shutdownNow();
+	}
+
+	boolean deveRegistrar(String sql, long nanos) {
+		long limite = limiteEmNanos;
+		return limite >= 0 && nanos >= limite && !sql.regionMatches(true, 0, "explain", 0, 7);
+	}
+
+	void registra(final String sql, final String parametros, final long nanos, final long linhas) {
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					processa(sql, parametros, nanos, linhas);
+				}
+			});
+		} catch(RejectedExecutionException e) {
+			descartadas.incrementAndGet();
+		}
+	}
+
+	private void processa(String sql, String parametros, long nanos, long linhas) {
+		String formato = formato(sql);
+		ConsultaLenta consulta = porFormato.get(formato);
+		if(consulta == null && porFormato.size() >= maximoDeFormatos) {
+			// sem lugar para guardar o formato, o EXPLAIN se repetiria a cada
+			// ocorrencia, tomando conexoes do pool da aplicacao
+			semPlano.incrementAndGet();
+			log.warning(String.format(Locale.ROOT,
+					"consulta lenta: %.1fms, %d linhas, parametros %s, sem plano (limite de %d formatos)%n  %s",
+					nanos / 1000000.0, linhas, parametros, maximoDeFormatos, sql));
+			return;
+		}
+		boolean nova = consulta == null;
+		if(nova) {
+			String plano = plano(sql);
+			consulta = new ConsultaLenta(formato, plano, resumo(plano));
+			porFormato.put(formato, consulta);
+		}
+		consulta.registra(nanos, linhas);
+
+		StringBuilder mensagem = new StringBuilder(String.format(Locale.ROOT,
+				"consulta lenta: %.1fms, %d linhas, parametros %s, formato %s%n  %s%n  acesso: %s",
+				nanos / 1000000.0, linhas, parametros, consulta.getId(), sql, consulta.getResumoDoPlano()));
+		if(nova) mensagem.append(String.format("%n")).append(consulta.getPlano());
+		log.warning(mensagem.toString());
+	}
+
+	private String plano(String sql) {
+		try {
+			Connection conexao = conexoes.getConnection();
+			try {
+				PreparedStatement explain = conexao.prepareStatement("explain plan for " + sql);
+				try {
+					StringBuilder plano = new StringBuilder();
+					ResultSet linhas = explain.executeQuery();
+					while(linhas.next()) {
+						plano.append(linhas.getString(1)).append('\n');
+					}
+					return plano.toString();
+				} finally {
+					explain.close();
+					if(!conexao.getAutoCommit()) conexao.rollback();
+				}
+			} finally {
+				conexoes.closeConnection(conexao);
+			}
+		} catch(SQLException e) {
+			log.log(Level.FINE, "EXPLAIN falhou para " + sql, e);
+			return "(sem plano: " + e.getMessage() + ")";
+		}
+	}
+
+	static String formato(String sql) {
+		String formato = TEXTOS.matcher(sql).replaceAll("?");
+		formato = NUMEROS.matcher(formato).replaceAll("?");
+		formato = LISTAS.matcher(formato).replaceAll("(?...)");
+		return ESPACOS.matcher(formato).replaceAll(" ").trim().toLowerCase(Locale.ROOT);
+	}
+
+	// uma entrada "TABELA: acesso" por tabela do plano
+	static String resumo(String plano) {
+		List<String> acessos = new ArrayList<String>();
+		Matcher acesso = ACESSOS.matcher(plano);
+		while(acesso.find()) {
+			acessos.add(acesso.group(1) + ": " + acesso.group(2).trim());
+		}
+		return acessos.isEmpty() ? "?" : String.join("; ", acessos);
+	}
+}
@@ -0,0 +1,105 @@
+package br.com.pm73.infra;
+
+import java.util.Locale;
+
+/**
+ * Retrato das medicoes de um metodo de DAO desde a subida (ou o ultimo
+ * Instrumentacao.zera): chamadas, latencia em microssegundos e o que elas
+ * fizeram no banco. Statements, linhas e entidades sao totais; as medias
+ * por chamada saem dividindo por getChamadas.
+ */
+public class MetricasDoMetodo {
+
+	private final String metodo;
+	private final long chamadas;
+	private final long erros;
+	private final double mediaEmMicros;
+	private final double p50EmMicros;
+	private final double p90EmMicros;
+	private final double p99EmMicros;
+	private final double p999EmMicros;
+	private final double maximoEmMicros;
+	private final long statements;
+	private final long linhas;
+	private final long entidades;
+
+	public MetricasDoMetodo(String metodo, long chamadas, long erros, Histograma latenciasEmNanos,
+			long statements, long linhas, long entidades) {
+		this.metodo = metodo;
+		this.chamadas = chamadas;
+		this.erros = erros;
+		this.mediaEmMicros = latenciasEmNanos.getMedia() / 1000.0;
+		this.p50EmMicros = latenciasEmNanos.percentil(0.50) / 1000.0;
+		this.p90EmMicros = latenciasEmNanos.percentil(0.90) / 1000.0;
+		this.p99EmMicros = latenciasEmNanos.percentil(0.99) / 1000.0;
+		this.p999EmMicros = latenciasEmNanos.percentil(0.999) / 1000.0;
+		this.maximoEmMicros = latenciasEmNanos.getMaximo() / 1000.0;
+		this.statements = statements;
+		this.linhas = linhas;
+		this.entidades = entidades;
+	}
+
+	/** Classe, nome e parametros, como LeilaoDao.novos(int, int). */
+	public String getMetodo() {
+		return metodo;
+	}
+
+	public long getChamadas() {
+		return chamadas;
+	}
+
+	/** Chamadas que terminaram com excecao; tambem entram nas latencias. */
+	public long getErros() {
+		return erros;
+	}
+
+	public double getMediaEmMicros() {
+		return mediaEmMicros;
+	}
+
+	public double getP50EmMicros() {
+		return p50EmMicros;
+	}
+
+	public double getP90EmMicros() {
+		return p90EmMicros;
+	}
+
+	public double getP99EmMicros() {
+		return p99EmMicros;
+	}
+
+	public double getP999EmMicros() {
+		return p999EmMicros;
+	}
+
+	public double getMaximoEmMicros() {
+		return maximoEmMicros;
+	}
+
+	/** Statements JDBC executados; um executeBatch conta como um. */
+	public long getStatements() {
+		return statements;
+	}
+
+	/** Linhas lidas dos ResultSets. */
+	public long getLinhas() {
+		return linhas;
+	}
+
+	/** Entidades montadas pelo Hibernate, do banco ou do cache de segundo nivel. */
+	public long getEntidades() {
+		return entidades;
+	}
+
+	public double getTempoTotalEmMillis() {
+		return mediaEmMicros * chamadas / 1000.0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "%-48s %9d %7d %10.1f %10.1f %10.1f %10.1f %10.1f %9d %10d %10d",
+				metodo, chamadas, erros, mediaEmMicros, p50EmMicros, p90EmMicros, p99EmMicros,
+				maximoEmMicros, statements, linhas, entidades);
+	}
+}
@@ -0,0 +1,99 @@
+package br.com.pm73.infra;
+
+import java.util.Properties;
+
+/**
+ * Perfis de configuracao do banco. Cada perfil define apenas os valores
+ * padrao; qualquer chave pode ser sobrescrita pelos arquivos, variaveis de
+ * ambiente e propriedades de sistema lidos em ConfiguracaoDoBanco.
+ */
+public enum Perfil {
+
+	/** Banco em arquivo caelum.db, com o SQL impresso para acompanhar os testes. */
+	TESTE {
+		@Override
+		protected void preenche(Properties p) {
+			p.setProperty("hibernate.connection.url", "jdbc:hsqldb:caelum.db;shutdown=true");
+			p.setProperty("hibernate.show_sql", "true");
+			p.setProperty("hibernate.jdbc.batch_size", "50");
+			p.setProperty("hibernate.jdbc.fetch_size", "100");
+		}
+	},
+
+	/** Banco somente em memoria, com o schema criado na subida. */
+	MEMORIA {
+		@Override
+		protected void preenche(Properties p) {
+			p.setProperty("hibernate.connection.url", "jdbc:hsqldb:mem:caelum");
+			p.setProperty("hibernate.hbm2ddl.auto", "create");
+			p.setProperty("hibernate.show_sql", "false");
+			p.setProperty("hibernate.jdbc.batch_size", "50");
+			p.setProperty("hibernate.jdbc.fetch_size", "500");
+		}
+	},
+
+	/**
+	 * Banco em arquivo com tabelas CACHED, sem log de SQL e com pool maior.
+	 * O arquivo e outro que o do TESTE: a conversao para CACHED reescreveria
+	 * o caelum.db versionado.
+	 */
+	PRODUCAO {
+		@Override
+		protected void preenche(Properties p) {
+			p.setProperty("hibernate.connection.url", "jdbc:hsqldb:file:caelum-producao.db;shutdown=true");
+			p.setProperty("hibernate.show_sql", "false");
+			p.setProperty("hibernate.jdbc.batch_size", "100");
+			p.setProperty("hibernate.jdbc.fetch_size", "500");
+			p.setProperty("hibernate.connection.pool_size", "20");
+			p.setProperty(FabricaDeRegioesDeCache.TAMANHO, "100000");
+			p.setProperty(PoolDeConexoes.TAMANHO_MINIMO, "5");
+			p.setProperty(ArmazenamentoDoBanco.TABELAS, "cached");
+			p.setProperty(ArmazenamentoDoBanco.CACHE_LINHAS, "200000");
+			p.setProperty(ArmazenamentoDoBanco.CACHE_KB, "65536");
+			p.setProperty(ArmazenamentoDoBanco.NIO, "true");
+			p.setProperty(ArmazenamentoDoBanco.NIO_MB, "512");
+			p.setProperty(ArmazenamentoDoBanco.DESFRAGMENTA_EM, "30");
+		}
+	};
+
+	public Properties getPropriedades() {
+		Properties p = new Properties();
+		p.setProperty("hibernate.connection.driver_class", "org.hsqldb.jdbcDriver");
+		p.setProperty("hibernate.dialect", "org.hibernate.dialect.HSQLDialect");
+		p.setProperty("hibernate.connection.username", "sa");
+		p.setProperty("hibernate.connection.password", "");
+		p.setProperty("hibernate.connection.provider_class", PoolDeConexoes.class.getName());
+		p.setProperty("hibernate.connection.pool_size", "10");
+		p.setProperty(PoolDeConexoes.TAMANHO_MINIMO, "1");
+		p.setProperty(PoolDeConexoes.TIMEOUT, "30000");
+		p.setProperty(PoolDeConexoes.VALIDA_AO_EMPRESTAR, "true");
+		p.setProperty(LogDeConsultasLentas.LIMITE, "500");
+		p.setProperty("hibernate.format_sql", "false");
+		p.setProperty("hibernate.id.new_generator_mappings", "true");
+		p.setProperty("hibernate.order_inserts", "true");
+		p.setProperty("hibernate.order_updates", "true");
+		p.setProperty("hibernate.cache.use_second_level_cache", "true");
+		p.setProperty("hibernate.cache.use_query_cache", "true");
+		p.setProperty("hibernate.cache.region.factory_class", FabricaDeRegioesDeCache.class.getName());
+		p.setProperty("hibernate.generate_statistics", "true");
+		p.setProperty(FabricaDeRegioesDeCache.TAMANHO, "10000");
+		p.setProperty(FabricaDeRegioesDeCache.TTL, "300");
+		p.setProperty(FabricaDeRegioesDeCache.POLITICA, "LRU");
+		p.setProperty(FabricaDeRegioesDeCache.TAMANHO_DAS_CONSULTAS, "1000");
+		p.setProperty(FabricaDeRegioesDeCache.TTL_DAS_CONSULTAS, "60");
+		p.setProperty(FabricaDeRegioesDeCache.POLITICA_DAS_CONSULTAS, "LRU");
+		preenche(p);
+		return p;
+	}
+
+	protected abstract void preenche(Properties p);
+
+	public static Perfil porNome(String nome) {
+		for (Perfil perfil : values()) {
+			if (perfil.name().equalsIgnoreCase(nome.trim())) {
+				return perfil;
+			}
+		}
+		throw new IllegalArgumentException("Perfil desconhecido: " + nome);
+	}
+}
@@ -0,0 +1,286 @@
+package br.com.pm73.infra;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.hibernate.service.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+
+/**
+ * Pool limitado de conexoes JDBC usado pelo Hibernate no lugar do
+ * DriverManagerConnectionProviderImpl.
+ *
+ * O numero maximo de conexoes vem de hibernate.connection.pool_size; quem
+ * pede uma conexao com o pool esgotado espera ate pm73.pool.timeout
+ * milissegundos antes de receber uma SQLException. Na subida aplica as
+ * configuracoes de ArmazenamentoDoBanco; no stop() fecha o banco HSQLDB com
+ * SHUTDOWN. As conexoes devolvidas voltam para o pool sem transacao aberta.
+ */
+public class PoolDeConexoes implements ConnectionProvider, Configurable, Stoppable {
+
+	public static final String TAMANHO_MINIMO = "pm73.pool.tamanho_minimo";
+	public static final String TIMEOUT = "pm73.pool.timeout";
+	public static final String VALIDA_AO_EMPRESTAR = "pm73.pool.valida_ao_emprestar";
+	public static final String TIMEOUT_DA_VALIDACAO = "pm73.pool.timeout_da_validacao";
+
+	private static final long serialVersionUID = 1L;
+
+	private String url;
+	private Properties propriedadesDaConexao;
+	private boolean autocommit;
+	private Integer isolamento;
+
+	private int tamanhoMaximo;
+	private long timeoutEmMillis;
+	private boolean validaAoEmprestar;
+	private int timeoutDaValidacaoEmSegundos;
+
+	private Semaphore permissoes;
+	private final LinkedBlockingDeque<Connection> ociosas = new LinkedBlockingDeque<Connection>();
+	private volatile boolean parado;
+	private LogDeConsultasLentas consultasLentas;
+
+	private final AtomicLong emprestimos = new AtomicLong();
+	private final AtomicLong esperasComTimeout = new AtomicLong();
+	private final AtomicLong criadas = new AtomicLong();
+	private final AtomicLong descartadas = new AtomicLong();
+	private final AtomicLong tempoTotalDeEsperaEmNanos = new AtomicLong();
+	private final AtomicLong maiorEsperaEmNanos = new AtomicLong();
+
+	@SuppressWarnings("rawtypes")
+	public void configure(Map configuracao) {
+		String driver = (String) configuracao.get(AvailableSettings.DRIVER);
+		if (driver != null) {
+			try {
+				Class.forName(driver);
+			} catch (ClassNotFoundException e) {
+				throw new HibernateException("Driver JDBC nao encontrado: " + driver, e);
+			}
+		}
+
+		url = (String) configuracao.get(AvailableSettings.URL);
+		if (url == null) {
+			throw new HibernateException("Informe " + AvailableSettings.URL + " para o pool de conexoes");
+		}
+
+		propriedadesDaConexao = new Properties();
+		String usuario = (String) configuracao.get(AvailableSettings.USER);
+		String senha = (String) configuracao.get(AvailableSettings.PASS);
+		if (usuario != null) propriedadesDaConexao.setProperty("user", usuario);
+		if (senha != null) propriedadesDaConexao.setProperty("password", senha);
+
+		autocommit = ConfigurationHelper.getBoolean(AvailableSettings.AUTOCOMMIT, configuracao);
+		isolamento = ConfigurationHelper.getInteger(AvailableSettings.ISOLATION, configuracao);
+
+		tamanhoMaximo = ConfigurationHelper.getInt(AvailableSettings.POOL_SIZE, configuracao, 10);
+		int tamanhoMinimo = Math.min(ConfigurationHelper.getInt(TAMANHO_MINIMO, configuracao, 0), tamanhoMaximo);
+		timeoutEmMillis = ConfigurationHelper.getInt(TIMEOUT, configuracao, 30000);
+		validaAoEmprestar = ConfigurationHelper.getBoolean(VALIDA_AO_EMPRESTAR, configuracao, true);
+		timeoutDaValidacaoEmSegundos = ConfigurationHelper.getInt(TIMEOUT_DA_VALIDACAO, configuracao, 2);
+
+		if (tamanhoMaximo < 1) {
+			throw new HibernateException(AvailableSettings.POOL_SIZE + " deve ser maior que zero");
+		}
+
+		permissoes = new Semaphore(tamanhoMaximo, true);
+		parado = false;
+		consultasLentas = new LogDeConsultasLentas(this, ConfigurationHelper.getInt(LogDeConsultasLentas.LIMITE, configuracao, 500));
+
+		try {
+			for (int i = 0; i < tamanhoMinimo; i++) {
+				ociosas.offer(abreConexao());
+			}
+		} catch (SQLException e) {
+			throw new HibernateException("Nao foi possivel abrir as conexoes iniciais do pool", e);
+		}
+
+		// antes de qualquer sessao, para o hbm2ddl ja criar as tabelas no tipo pedido
+		try {
+			Connection conexao = getConnection();
+			try {
+				new ArmazenamentoDoBanco(configuracao).aplica(conexao);
+			} finally {
+				closeConnection(conexao);
+			}
+		} catch (SQLException e) {
+			throw new HibernateException("Nao foi possivel configurar o armazenamento do banco", e);
+		}
+	}
+
+	public Connection getConnection() throws SQLException {
+		if (parado) {
+			throw new SQLException("O pool de conexoes ja foi encerrado");
+		}
+
+		long inicio = System.nanoTime();
+		boolean obteve;
+		try {
+			obteve = permissoes.tryAcquire(timeoutEmMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrompido enquanto esperava uma conexao do pool", e);
+		}
+		registraEspera(System.nanoTime() - inicio);
+
+		if (!obteve) {
+			esperasComTimeout.incrementAndGet();
+			throw new SQLException("Nenhuma conexao livre no pool apos " + timeoutEmMillis
+					+ "ms (maximo de " + tamanhoMaximo + " conexoes)");
+		}
+
+		try {
+			Connection conexao = proximaConexaoValida();
+			if (conexao.getAutoCommit() != autocommit) {
+				conexao.setAutoCommit(autocommit);
+			}
+			emprestimos.incrementAndGet();
+			return conexao;
+		} catch (SQLException e) {
+			permissoes.release();
+			throw e;
+		} catch (RuntimeException e) {
+			permissoes.release();
+			throw e;
+		}
+	}
+
+	public void closeConnection(Connection conexao) throws SQLException {
+		try {
+			if (parado || conexao.isClosed()) {
+				descarta(conexao);
+			} else if (desfazPendencias(conexao)) {
+				ociosas.offerFirst(conexao);
+			}
+		} finally {
+			permissoes.release();
+		}
+	}
+
+	public void stop() {
+		parado = true;
+		consultasLentas.para();
+		if (url.startsWith("jdbc:hsqldb:")) {
+			desliga();
+		}
+		Connection conexao;
+		while ((conexao = ociosas.poll()) != null) {
+			descarta(conexao);
+		}
+	}
+
+	public boolean supportsAggressiveRelease() {
+		return false;
+	}
+
+	@SuppressWarnings("rawtypes")
+	public boolean isUnwrappableAs(Class tipo) {
+		return ConnectionProvider.class.equals(tipo) || PoolDeConexoes.class.isAssignableFrom(tipo);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> tipo) {
+		if (isUnwrappableAs(tipo)) {
+			return (T) this;
+		}
+		throw new UnknownUnwrapTypeException(tipo);
+	}
+
+	public EstatisticasDoPool getEstatisticas() {
+		int livres = permissoes.availablePermits();
+		return new EstatisticasDoPool(tamanhoMaximo, tamanhoMaximo - livres, ociosas.size(),
+				permissoes.getQueueLength(), emprestimos.get(), esperasComTimeout.get(),
+				criadas.get(), descartadas.get(), tempoTotalDeEsperaEmNanos.get(),
+				maiorEsperaEmNanos.get());
+	}
+
+	public LogDeConsultasLentas getConsultasLentas() {
+		return consultasLentas;
+	}
+
+	private Connection proximaConexaoValida() throws SQLException {
+		Connection conexao;
+		while ((conexao = ociosas.pollFirst()) != null) {
+			if (!validaAoEmprestar || conexao.isValid(timeoutDaValidacaoEmSegundos)) {
+				return conexao;
+			}
+			descarta(conexao);
+		}
+		return abreConexao();
+	}
+
+	private Connection abreConexao() throws SQLException {
+		// embrulhada para a Instrumentacao e o log de consultas lentas
+		Connection conexao = ContadorDeJdbc.conta(DriverManager.getConnection(url, propriedadesDaConexao), consultasLentas);
+		if (isolamento != null) {
+			conexao.setTransactionIsolation(isolamento.intValue());
+		}
+		criadas.incrementAndGet();
+		return conexao;
+	}
+
+	// quem pegar a conexao depois nao pode herdar uma transacao aberta
+	private boolean desfazPendencias(Connection conexao) {
+		try {
+			if (!conexao.getAutoCommit()) {
+				conexao.rollback();
+			}
+			return true;
+		} catch (SQLException e) {
+			descarta(conexao);
+			return false;
+		}
+	}
+
+	// o pool sempre guarda conexoes abertas, entao o shutdown=true da URL
+	// nunca dispara; sem o SHUTDOWN os ultimos commits (WRITE DELAY) se perdem
+	private void desliga() {
+		Connection conexao = ociosas.peek();
+		boolean emprestadas = permissoes.availablePermits() < tamanhoMaximo;
+		try {
+			if (conexao == null) {
+				// sem conexao nenhuma aberta o banco ja foi fechado
+				if (!emprestadas) return;
+				conexao = DriverManager.getConnection(url, propriedadesDaConexao);
+			}
+			Statement statement = conexao.createStatement();
+			try {
+				statement.execute("shutdown");
+			} finally {
+				statement.close();
+				if (!ociosas.contains(conexao)) conexao.close();
+			}
+		} catch (SQLException e) {
+			// o banco ja estava fechado, nada mais a fazer
+		}
+	}
+
+	private void descarta(Connection conexao) {
+		descartadas.incrementAndGet();
+		try {
+			conexao.close();
+		} catch (SQLException e) {
+			// a conexao ja estava quebrada, nada mais a fazer
+		}
+	}
+
+	private void registraEspera(long esperaEmNanos) {
+		tempoTotalDeEsperaEmNanos.addAndGet(esperaEmNanos);
+		long maior = maiorEsperaEmNanos.get();
+		while (esperaEmNanos > maior && !maiorEsperaEmNanos.compareAndSet(maior, esperaEmNanos)) {
+			maior = maiorEsperaEmNanos.get();
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package br.com.pm73.servico;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import br.com.pm73.dao.CriadorDeSessao;
+import org.hibernate.Session;
+
+/**
+ * Encerra os leiloes abertos ha mais que a duracao de um leilao, sem
+ * carrega-los: busca os ids em lotes e encerra cada lote com um update em
+ * massa, na sua propria transacao.
+ *
+ * O update so mexe em leiloes ainda abertos e incrementa a versao, entao
+ * rodar de novo depois de uma queda so encerra o que faltou, e um lance
+ * em andamento num leilao recem-encerrado falha no controle otimista.
+ * Pode rodar sozinho, de tempos em tempos, com agenda().
+ */
+public class EncerradorDeLeiloes {
+
+	public static final Duration DURACAO_PADRAO = Duration.ofDays(7);
+	public static final int TAMANHO_PADRAO_DO_LOTE = 1000;
+
+	private final CriadorDeSessao criador;
+	private final Duration duracao;
+	private final int tamanhoDoLote;
+
+	private final AtomicLong execucoes = new AtomicLong();
+	private final AtomicLong encerrados = new AtomicLong();
+	private final AtomicLong falhas = new AtomicLong();
+	private volatile ResultadoDoEncerramento ultimoResultado;
+	private volatile RuntimeException ultimaFalha;
+	private ScheduledExecutorService agendador;
+
+	public EncerradorDeLeiloes() {
+		this(new CriadorDeSessao(), DURACAO_PADRAO, TAMANHO_PADRAO_DO_LOTE);
+	}
+
+	public EncerradorDeLeiloes(CriadorDeSessao criador, Duration duracao, int tamanhoDoLote) {
+		if(tamanhoDoLote < 1) {
+			throw new IllegalArgumentException("O tamanho do lote deve ser positivo: " + tamanhoDoLote);
+		}
+		this.criador = criador;
+		this.duracao = duracao;
+		this.tamanhoDoLote = tamanhoDoLote;
+	}
+
+	/**
+	 * Encerra, lote a lote, todos os leiloes abertos antes de agora menos a
+	 * duracao. Cada lote e confirmado antes do proximo comecar.
+	 */
+	public ResultadoDoEncerramento encerraVencidos() {
+		long inicio = System.nanoTime();
+		long limite = System.currentTimeMillis() - duracao.toMillis();
+		long leiloes = 0;
+		int lotes = 0;
+
+		List<Integer> ids;
+		do {
+			Session session = criador.getSession();
+			try {
+				session.beginTransaction();
+				ids = idsVencidos(session, limite);
+				if(!ids.isEmpty()) {
+					leiloes += session.createQuery("update versioned Leilao l set l.encerrado = true " +
+							"where l.id in (:ids) and l.encerrado = false")
+							.setParameterList("ids", ids)
+							.executeUpdate();
+					lotes++;
+				}
+				session.getTransaction().commit();
+			} finally {
+				if(session.getTransaction().isActive()) {
+					session.getTransaction().rollback();
+				}
+				session.close();
+			}
+		} while(ids.size() == tamanhoDoLote);
+
+		ResultadoDoEncerramento resultado = new ResultadoDoEncerramento(leiloes, lotes, System.nanoTime() - inicio);
+		execucoes.incrementAndGet();
+		encerrados.addAndGet(leiloes);
+		ultimoResultado = resultado;
+		return resultado;
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Integer> idsVencidos(Session session, long limite) {
+		return session.createQuery("select l.id from Leilao l " +
+				"where l.encerrado = false and l.dataAbertura <= :limite order by l.id")
+				.setParameter("limite", limite)
+				.setMaxResults(tamanhoDoLote)
+				.list();
+	}
+
+	/**
+	 * Roda encerraVencidos numa thread propria, a cada intervalo contado do
+	 * fim da execucao anterior. Uma execucao que falha e contada em
+	 * getFalhas() e nao impede as proximas.
+	 */
+	public synchronized void agenda(long intervalo, TimeUnit unidade) {
+		if(agendador != null) {
+			throw new IllegalStateException("O encerrador ja esta agendado");
+		}
+		agendador = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable tarefa) {
+				Thread thread = new Thread(tarefa, "encerrador-de-leiloes");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		agendador.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				try {
+					encerraVencidos();
+				} catch(RuntimeException e) {
+					falhas.incrementAndGet();
+					ultimaFalha = e;
+				}
+			}
+		}, 0, intervalo, unidade);
+	}
+
+	/**
+	 * Cancela o agendamento e espera a execucao em andamento, se houver,
+	 * terminar (por ate um minuto).
+	 */
+	public synchronized void para() throws InterruptedException {
+		if(agendador == null) return;
+		agendador.shutdown();
+		agendador.awaitTermination(1, TimeUnit.MINUTES);
+		agendador = null;
+	}
+
+	public long getExecucoes() {
+		return execucoes.get();
+	}
+
+	/** Leiloes encerrados somando todas as execucoes. */
+	public long getEncerrados() {
+		return encerrados.get();
+	}
+
+	public long getFalhas() {
+		return falhas.get();
+	}
+
+	public RuntimeException getUltimaFalha() {
+		return ultimaFalha;
+	}
+
+	public ResultadoDoEncerramento getUltimoResultado() {
+		return ultimoResultado;
+	}
+}
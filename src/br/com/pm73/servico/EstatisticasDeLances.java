@@ -0,0 +1,57 @@
+package br.com.pm73.servico;
+
+/**
+ * Fotografia das metricas do ServicoDeLances num dado instante.
+ */
+public class EstatisticasDeLances {
+
+	private final long aceitos;
+	private final long recusados;
+	private final long conflitos;
+	private final long desistencias;
+	private final int maiorNumeroDeTentativas;
+
+	public EstatisticasDeLances(long aceitos, long recusados, long conflitos, long desistencias,
+			int maiorNumeroDeTentativas) {
+		this.aceitos = aceitos;
+		this.recusados = recusados;
+		this.conflitos = conflitos;
+		this.desistencias = desistencias;
+		this.maiorNumeroDeTentativas = maiorNumeroDeTentativas;
+	}
+
+	/** Lances gravados. */
+	public long getAceitos() {
+		return aceitos;
+	}
+
+	/** Lances que nao superavam o maior lance, ou em leilao encerrado. */
+	public long getRecusados() {
+		return recusados;
+	}
+
+	/** Tentativas desfeitas porque outro lance gravou o leilao antes. */
+	public long getConflitos() {
+		return conflitos;
+	}
+
+	/** Conflitos que levaram a uma nova tentativa. */
+	public long getRetentativas() {
+		return conflitos - desistencias;
+	}
+
+	/** Lances abandonados depois de esgotar as tentativas. */
+	public long getDesistencias() {
+		return desistencias;
+	}
+
+	public int getMaiorNumeroDeTentativas() {
+		return maiorNumeroDeTentativas;
+	}
+
+	@Override
+	public String toString() {
+		return aceitos + " aceitos, " + recusados + " recusados, " + conflitos + " conflitos, "
+				+ desistencias + " desistencias, ate " + maiorNumeroDeTentativas + " tentativas por lance";
+	}
+}
@@ -0,0 +1,42 @@
+package br.com.pm73.servico;
+
+/**
+ * Quantos leiloes uma execucao do EncerradorDeLeiloes encerrou, em quantos
+ * lotes e em quanto tempo.
+ */
+public class ResultadoDoEncerramento {
+
+	private final long leiloes;
+	private final int lotes;
+	private final long duracaoEmNanos;
+
+	public ResultadoDoEncerramento(long leiloes, int lotes, long duracaoEmNanos) {
+		this.leiloes = leiloes;
+		this.lotes = lotes;
+		this.duracaoEmNanos = duracaoEmNanos;
+	}
+
+	public long getLeiloes() {
+		return leiloes;
+	}
+
+	/** Lotes (transacoes) confirmados. */
+	public int getLotes() {
+		return lotes;
+	}
+
+	public double getDuracaoEmMillis() {
+		return duracaoEmNanos / 1000000.0;
+	}
+
+	public double getLeiloesPorSegundo() {
+		if (duracaoEmNanos == 0) return 0.0;
+		return leiloes * 1000000000.0 / duracaoEmNanos;
+	}
+
+	@Override
+	public String toString() {
+		return leiloes + " leiloes encerrados em " + lotes + " lotes, " + getDuracaoEmMillis()
+				+ "ms (" + Math.round(getLeiloesPorSegundo()) + " leiloes/s)";
+	}
+}
@@ -0,0 +1,136 @@
+package br.com.pm73.servico;
+
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import br.com.pm73.dao.CriadorDeSessao;
+import br.com.pm73.dominio.Dinheiro;
+import br.com.pm73.dominio.Lance;
+import br.com.pm73.dominio.Leilao;
+import br.com.pm73.dominio.Usuario;
+import org.hibernate.Session;
+import org.hibernate.StaleStateException;
+import org.hibernate.exception.LockAcquisitionException;
+
+/**
+ * Registra lances que podem chegar ao mesmo tempo para o mesmo leilao.
+ *
+ * Cada tentativa roda na sua propria sessao e transacao: le o leilao,
+ * valida o lance contra o maior lance atual e grava. O @Version do Leilao
+ * faz a gravacao falhar se outro lance entrou no meio; nesse caso a
+ * tentativa e desfeita e repetida, com uma espera aleatoria crescente, ate
+ * o maximo de tentativas. Pode ser usado por varias threads.
+ */
+public class ServicoDeLances {
+
+	public static final int TENTATIVAS_PADRAO = 10;
+
+	private final CriadorDeSessao criador;
+	private final int tentativas;
+
+	private final AtomicLong aceitos = new AtomicLong();
+	private final AtomicLong recusados = new AtomicLong();
+	private final AtomicLong conflitos = new AtomicLong();
+	private final AtomicLong desistencias = new AtomicLong();
+	private final AtomicInteger maiorNumeroDeTentativas = new AtomicInteger();
+
+	public ServicoDeLances() {
+		this(new CriadorDeSessao(), TENTATIVAS_PADRAO);
+	}
+
+	public ServicoDeLances(CriadorDeSessao criador, int tentativas) {
+		if(tentativas < 1) {
+			throw new IllegalArgumentException("O numero de tentativas deve ser positivo: " + tentativas);
+		}
+		this.criador = criador;
+		this.tentativas = tentativas;
+	}
+
+	/**
+	 * Grava um lance de valor para o leilao, em nome do usuario.
+	 *
+	 * @return o lance gravado, ja fora de sessao
+	 * @throws IllegalArgumentException se o leilao nao existe ou o valor nao
+	 *         supera o maior lance (ou o valor inicial, no primeiro lance)
+	 * @throws IllegalStateException se o leilao esta encerrado
+	 * @throws StaleStateException ou LockAcquisitionException se os
+	 *         conflitos continuarem depois de todas as tentativas
+	 */
+	public Lance daLance(int leilaoId, int usuarioId, Dinheiro valor) {
+		for(int tentativa = 1; ; tentativa++) {
+			Session session = criador.getSession();
+			try {
+				session.beginTransaction();
+				Lance lance = registra(session, leilaoId, usuarioId, valor);
+				session.getTransaction().commit();
+
+				aceitos.incrementAndGet();
+				registraTentativas(tentativa);
+				return lance;
+			} catch(StaleStateException | LockAcquisitionException e) {
+				conflitos.incrementAndGet();
+				if(tentativa == tentativas) {
+					desistencias.incrementAndGet();
+					registraTentativas(tentativa);
+					throw e;
+				}
+			} catch(IllegalArgumentException | IllegalStateException e) {
+				recusados.incrementAndGet();
+				registraTentativas(tentativa);
+				throw e;
+			} finally {
+				if(session.getTransaction().isActive()) {
+					session.getTransaction().rollback();
+				}
+				session.close();
+			}
+			espera(tentativa);
+		}
+	}
+
+	private Lance registra(Session session, int leilaoId, int usuarioId, Dinheiro valor) {
+		Leilao leilao = (Leilao) session.get(Leilao.class, leilaoId);
+		if(leilao == null) {
+			throw new IllegalArgumentException("Leilao inexistente: " + leilaoId);
+		}
+		if(leilao.isEncerrado()) {
+			throw new IllegalStateException("O leilao " + leilaoId + " esta encerrado");
+		}
+		boolean primeiro = leilao.getQuantidadeDeLances() == 0;
+		long minimo = primeiro ? leilao.getValorInicialEmCentavos() : leilao.getMaiorLanceEmCentavos();
+		boolean supera = primeiro ? valor.getCentavos() >= minimo : valor.getCentavos() > minimo;
+		if(!supera) {
+			throw new IllegalArgumentException("Lance de " + valor + " nao supera " + Dinheiro.emCentavos(minimo)
+					+ " no leilao " + leilaoId);
+		}
+
+		// load() so cria o proxy: o lance precisa apenas do id do usuario
+		Usuario usuario = (Usuario) session.load(Usuario.class, usuarioId);
+		Lance lance = leilao.adicionaLance(new Lance(Instant.now(), usuario, valor, leilao));
+		session.save(lance);
+		return lance;
+	}
+
+	private void registraTentativas(int tentativa) {
+		int maior;
+		while((maior = maiorNumeroDeTentativas.get()) < tentativa
+				&& !maiorNumeroDeTentativas.compareAndSet(maior, tentativa)) {
+		}
+	}
+
+	private static void espera(int tentativa) {
+		try {
+			Thread.sleep(ThreadLocalRandom.current().nextInt(1 << Math.min(tentativa, 6)));
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrompido enquanto esperava para tentar de novo", e);
+		}
+	}
+
+	public EstatisticasDeLances getEstatisticas() {
+		return new EstatisticasDeLances(aceitos.get(), recusados.get(), conflitos.get(),
+				desistencias.get(), maiorNumeroDeTentativas.get());
+	}
+}
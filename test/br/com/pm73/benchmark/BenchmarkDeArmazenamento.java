@@ -0,0 +1,271 @@
+package br.com.pm73.benchmark;
+
+import br.com.pm73.dao.CriadorDeSessao;
+import br.com.pm73.dao.LeilaoDao;
+import br.com.pm73.dataBuilder.GeradorDeDados;
+import br.com.pm73.dataBuilder.ResultadoDaGeracao;
+import br.com.pm73.dominio.Usuario;
+import br.com.pm73.infra.ArmazenamentoDoBanco;
+import br.com.pm73.infra.ConfiguracaoDoBanco;
+import br.com.pm73.infra.Histograma;
+import org.hibernate.Session;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compara as tabelas MEMORY e CACHED do HSQLDB sobre a mesma base gerada
+ * com semente fixa: tamanho em disco, tempo e heap da subida e latencia
+ * das consultas de LeilaoDao.
+ *
+ * Cada modo roda em JVMs proprias (a SessionFactory e unica por JVM e o
+ * heap precisa comecar vazio): uma gera a base com o perfil PRODUCAO e
+ * hbm2ddl create, a outra abre a base ja pronta e mede. O segundo nivel e
+ * o cache de consultas ficam desligados para as consultas irem ao banco.
+ *
+ * Argumentos: quantidade de leiloes (padrao 200.000, com um usuario para
+ * cada 10 leiloes e 5 lances por leilao em media) e o diretorio das bases
+ * (padrao, um diretorio temporario). As JVMs filhas usam o mesmo -Xmx
+ * desta; o log delas fica em &lt;modo&gt;.log no diretorio.
+ */
+public class BenchmarkDeArmazenamento {
+
+    private static final long SEMENTE = 42;
+    private static final Instant REFERENCIA = Instant.parse("2024-01-01T00:00:00Z");
+    private static final int DIAS = 365;
+    private static final long AQUECIMENTO_MS = 1000;
+    private static final long MEDICAO_MS = 3000;
+    private static final String RESULTADO = "resultado;";
+
+    private interface Consulta {
+        void executa(Session session, Random aleatorio);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && (args[0].equals("popula") || args[0].equals("mede"))) {
+            filha(args[0], args[1], Integer.parseInt(args[2]));
+            return;
+        }
+
+        int leiloes = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        File diretorio = args.length > 1 ? new File(args[1]) : temporario();
+
+        Map<String, Map<String, Double>> porModo = new LinkedHashMap<String, Map<String, Double>>();
+        for (ArmazenamentoDoBanco.Tabelas tabelas : ArmazenamentoDoBanco.Tabelas.values()) {
+            String modo = tabelas.name().toLowerCase(Locale.ROOT);
+            File base = new File(diretorio, modo);
+            apaga(base);
+            base.mkdirs();
+
+            Map<String, Double> resultados = new LinkedHashMap<String, Double>();
+            resultados.putAll(roda("popula", modo, leiloes, base));
+            resultados.put("disco (MB)", tamanho(base) / (1024.0 * 1024.0));
+            resultados.putAll(roda("mede", modo, leiloes, base));
+            porModo.put(modo, resultados);
+        }
+
+        System.out.printf("%n%-36s", leiloes + " leiloes");
+        for (String modo : porModo.keySet()) {
+            System.out.printf(" %12s", modo);
+        }
+        System.out.println();
+        for (String chave : porModo.values().iterator().next().keySet()) {
+            System.out.printf("%-36s", chave);
+            for (Map<String, Double> resultados : porModo.values()) {
+                Double valor = resultados.get(chave);
+                System.out.printf(Locale.ROOT, " %12.1f", valor == null ? Double.NaN : valor);
+            }
+            System.out.println();
+        }
+    }
+
+    private static Map<String, Double> roda(String etapa, String modo, int leiloes, File base)
+            throws IOException, InterruptedException {
+        List<String> comando = new ArrayList<String>();
+        comando.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        comando.add("-Xmx" + Runtime.getRuntime().maxMemory() / (1024 * 1024) + "m");
+        comando.add("-cp");
+        comando.add(System.getProperty("java.class.path"));
+        comando.add("-D" + ConfiguracaoDoBanco.PERFIL + "=producao");
+        comando.add("-Dhibernate.connection.url=jdbc:hsqldb:file:"
+                + new File(base, "caelum").getAbsolutePath() + ";shutdown=true");
+        comando.add("-D" + ArmazenamentoDoBanco.TABELAS + "=" + modo);
+        comando.add("-Dhibernate.cache.use_second_level_cache=false");
+        comando.add("-Dhibernate.cache.use_query_cache=false");
+        if (etapa.equals("popula")) {
+            comando.add("-Dhibernate.hbm2ddl.auto=create");
+        }
+        comando.add(BenchmarkDeArmazenamento.class.getName());
+        comando.add(etapa);
+        comando.add(modo);
+        comando.add(String.valueOf(leiloes));
+
+        System.out.println(etapa + " " + modo + "...");
+        Process processo = new ProcessBuilder(comando)
+                .redirectError(ProcessBuilder.Redirect.appendTo(new File(base.getParentFile(), modo + ".log")))
+                .start();
+
+        Map<String, Double> resultados = new LinkedHashMap<String, Double>();
+        BufferedReader saida = new BufferedReader(new InputStreamReader(processo.getInputStream(), "UTF-8"));
+        String linha;
+        while ((linha = saida.readLine()) != null) {
+            if (linha.startsWith(RESULTADO)) {
+                String[] partes = linha.substring(RESULTADO.length()).split(";");
+                resultados.put(partes[0], Double.valueOf(partes[1]));
+            }
+        }
+        if (processo.waitFor() != 0) {
+            throw new IllegalStateException(etapa + " " + modo + " falhou; veja " + modo + ".log em " + base.getParent());
+        }
+        return resultados;
+    }
+
+    private static void filha(String etapa, String modo, int leiloes) throws SQLException {
+        try {
+            if (etapa.equals("popula")) {
+                ResultadoDaGeracao resultado = new GeradorDeDados(SEMENTE)
+                        .comUsuarios(Math.max(1, leiloes / 10))
+                        .comLeiloes(leiloes)
+                        .abertosNosDiasAntesDe(DIAS, REFERENCIA)
+                        .gera();
+                publica("carga (s)", resultado.getDuracaoEmMillis() / 1000.0);
+            } else {
+                mede();
+            }
+        } finally {
+            CriadorDeSessao.encerra();
+        }
+    }
+
+    private static void mede() throws SQLException {
+        ConfiguracaoDoBanco configuracao = ConfiguracaoDoBanco.doPerfilAtivo();
+        long heapAntes = heapUsado();
+
+        // abrir o banco e o que reexecuta o .script das tabelas MEMORY
+        long inicio = System.nanoTime();
+        Connection abertura = DriverManager.getConnection(configuracao.get("hibernate.connection.url"), "sa", "");
+        publica("abertura do banco (ms)", (System.nanoTime() - inicio) / 1000000.0);
+        publica("heap do banco aberto (MB)", (heapUsado() - heapAntes) / (1024.0 * 1024.0));
+
+        inicio = System.nanoTime();
+        CriadorDeSessao.inicia();
+        publica("subida da SessionFactory (ms)", (System.nanoTime() - inicio) / 1000000.0);
+        abertura.close();
+
+        Session session = new CriadorDeSessao().getSession();
+        final List<?> idsDosLeiloes;
+        final List<?> idsDosUsuarios;
+        try {
+            idsDosLeiloes = session.createQuery("select l.id from Leilao l").list();
+            idsDosUsuarios = session.createQuery("select u.id from Usuario u").list();
+        } finally {
+            session.close();
+        }
+
+        Map<String, Consulta> consultas = new LinkedHashMap<String, Consulta>();
+        consultas.put("porId", new Consulta() {
+            public void executa(Session session, Random aleatorio) {
+                int id = (Integer) idsDosLeiloes.get(aleatorio.nextInt(idsDosLeiloes.size()));
+                new LeilaoDao(session).porId(id).getDono().getNome();
+            }
+        });
+        consultas.put("porPeriodo, 1 dia, 20", new Consulta() {
+            public void executa(Session session, Random aleatorio) {
+                Instant inicio = REFERENCIA.minus(aleatorio.nextInt(DIAS), ChronoUnit.DAYS);
+                new LeilaoDao(session).porPeriodo(inicio, inicio.plus(1, ChronoUnit.DAYS), 0, 20);
+            }
+        });
+        consultas.put("maisValorizados(10)", new Consulta() {
+            public void executa(Session session, Random aleatorio) {
+                new LeilaoDao(session).maisValorizados(10);
+            }
+        });
+        consultas.put("listaLeiloesDoUsuario, 20", new Consulta() {
+            public void executa(Session session, Random aleatorio) {
+                Object id = idsDosUsuarios.get(aleatorio.nextInt(idsDosUsuarios.size()));
+                Usuario usuario = (Usuario) session.load(Usuario.class, (Integer) id);
+                new LeilaoDao(session).listaLeiloesDoUsuario(usuario, 0, 20);
+            }
+        });
+
+        for (Map.Entry<String, Consulta> consulta : consultas.entrySet()) {
+            executa(consulta.getValue(), AQUECIMENTO_MS, new Histograma());
+            Histograma latencias = new Histograma();
+            executa(consulta.getValue(), MEDICAO_MS, latencias);
+            publica(consulta.getKey() + " p50 (us)", latencias.percentil(0.50) / 1000.0);
+            publica(consulta.getKey() + " p99 (us)", latencias.percentil(0.99) / 1000.0);
+        }
+        publica("heap depois das consultas (MB)", (heapUsado() - heapAntes) / (1024.0 * 1024.0));
+    }
+
+    private static void executa(Consulta consulta, long duracaoEmMillis, Histograma latencias) {
+        Random aleatorio = new Random(SEMENTE);
+        Session session = new CriadorDeSessao().getSessionSomenteLeitura();
+        try {
+            long fim = System.nanoTime() + duracaoEmMillis * 1000000L;
+            while (System.nanoTime() < fim) {
+                long inicio = System.nanoTime();
+                consulta.executa(session, aleatorio);
+                session.clear();
+                latencias.registra(System.nanoTime() - inicio);
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    private static void publica(String chave, double valor) {
+        System.out.println(RESULTADO + chave + ";" + valor);
+    }
+
+    private static long heapUsado() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static File temporario() throws IOException {
+        File diretorio = File.createTempFile("armazenamento", "");
+        diretorio.delete();
+        diretorio.mkdirs();
+        return diretorio;
+    }
+
+    private static long tamanho(File diretorio) {
+        long bytes = 0;
+        for (File arquivo : diretorio.listFiles()) {
+            bytes += arquivo.isDirectory() ? tamanho(arquivo) : arquivo.length();
+        }
+        return bytes;
+    }
+
+    private static void apaga(File arquivo) {
+        File[] filhos = arquivo.listFiles();
+        if (filhos != null) {
+            for (File filho : filhos) {
+                apaga(filho);
+            }
+        }
+        arquivo.delete();
+    }
+}
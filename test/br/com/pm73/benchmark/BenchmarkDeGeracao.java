@@ -0,0 +1,39 @@
+package br.com.pm73.benchmark;
+
+import br.com.pm73.dao.CriadorDeSessao;
+import br.com.pm73.dataBuilder.GeradorDeDados;
+import br.com.pm73.dataBuilder.ResultadoDaGeracao;
+import br.com.pm73.infra.ConfiguracaoDoBanco;
+
+/**
+ * Linhas por segundo do GeradorDeDados com uma thread e com todos os
+ * nucleos, cada geracao numa base recriada.
+ *
+ * Roda no perfil MEMORIA; o primeiro argumento e a quantidade de leiloes
+ * (padrao 1.000.000, com um usuario para cada 10 leiloes e 5 lances por
+ * leilao em media). Com esse volume use algo como -Xmx4g.
+ */
+public class BenchmarkDeGeracao {
+
+    public static void main(String[] args) {
+        System.setProperty(ConfiguracaoDoBanco.PERFIL, "memoria");
+        int leiloes = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int nucleos = Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("%-12s %12s %14s%n", "threads", "linhas", "linhas/s");
+        for (int threads : new int[] { 1, nucleos }) {
+            try {
+                ResultadoDaGeracao resultado = new GeradorDeDados(42)
+                        .emThreads(threads)
+                        .comUsuarios(Math.max(1, leiloes / 10))
+                        .comLeiloes(leiloes)
+                        .gera();
+                System.out.printf("%-12d %12d %14.0f%n", threads, resultado.getLinhas(),
+                        resultado.getLinhasPorSegundo());
+            } finally {
+                // a proxima SessionFactory recria o schema (hbm2ddl create)
+                CriadorDeSessao.encerra();
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package br.com.pm73.benchmark;
+
+import br.com.pm73.dao.CriadorDeSessao;
+import br.com.pm73.dao.LeilaoDao;
+import br.com.pm73.dao.UsuarioDao;
+import br.com.pm73.dominio.Lance;
+import br.com.pm73.dominio.Leilao;
+import br.com.pm73.dominio.Usuario;
+import br.com.pm73.infra.ConfiguracaoDoBanco;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+
+/**
+ * Mede o tempo das consultas dos DAOs com e sem os indices do schema.
+ *
+ * Roda no perfil MEMORIA; o primeiro argumento e a quantidade de leiloes
+ * (padrao 1.000.000). Com esse volume use algo como -Xmx3g.
+ */
+public class BenchmarkDeIndices {
+
+    private static final String[] INDICES = {
+            "idx_leilao_usado_abertura", "idx_leilao_abertura",
+            "idx_leilao_encerrado_abertura", "idx_leilao_encerrado_valor_lances",
+            "idx_lance_usuario_leilao"
+    };
+    private static final int USUARIOS = 10000;
+    private static final int REPETICOES = 20;
+
+    public static void main(String[] args) {
+        System.setProperty(ConfiguracaoDoBanco.PERFIL, "memoria");
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        Session session = new CriadorDeSessao().getSession();
+        try {
+            session.beginTransaction();
+            Usuario[] usuarios = populaBanco(session, quantidade);
+            session.getTransaction().commit();
+
+            Map<String, Double> comIndices = mede(session, usuarios);
+            removeIndices(session);
+            Map<String, Double> semIndices = mede(session, usuarios);
+
+            System.out.println();
+            System.out.println(quantidade + " leiloes - mediana de " + REPETICOES + " execucoes (ms)");
+            System.out.printf("%-28s %12s %12s%n", "consulta", "com indices", "sem indices");
+            for (String consulta : comIndices.keySet()) {
+                System.out.printf("%-28s %12.3f %12.3f%n", consulta,
+                        comIndices.get(consulta), semIndices.get(consulta));
+            }
+        } finally {
+            session.close();
+            CriadorDeSessao.encerra();
+        }
+    }
+
+    private static Usuario[] populaBanco(Session session, int quantidade) {
+        UsuarioDao usuarioDao = new UsuarioDao(session);
+        LeilaoDao leilaoDao = new LeilaoDao(session);
+        Random aleatorio = new Random(42);
+
+        Usuario[] usuarios = new Usuario[USUARIOS];
+        for (int i = 0; i < USUARIOS; i++) {
+            usuarios[i] = new Usuario("Usuario " + i, "usuario" + i + "@pm73.com.br");
+            usuarioDao.salvar(usuarios[i]);
+        }
+        session.flush();
+
+        List<Leilao> lote = new ArrayList<Leilao>();
+        for (int i = 0; i < quantidade; i++) {
+            Leilao leilao = new Leilao("Leilao " + i, reais(10.0 + aleatorio.nextInt(10000)),
+                    usuarios[aleatorio.nextInt(USUARIOS)], aleatorio.nextBoolean());
+            Instant abertura = Instant.now().minus(aleatorio.nextInt(60 * 24 * 365), ChronoUnit.MINUTES);
+            leilao.setDataAbertura(abertura);
+            if (aleatorio.nextInt(10) < 3) leilao.encerra();
+
+            if (i % 10 == 0) {
+                for (int j = 0; j < 4; j++) {
+                    leilao.adicionaLance(new Lance(abertura, usuarios[aleatorio.nextInt(USUARIOS)],
+                            leilao.getValorInicialEmCentavos() + j * 100, leilao));
+                }
+            }
+            lote.add(leilao);
+
+            if (lote.size() == 10000) {
+                System.out.println("populando " + (i + 1) + "/" + quantidade + ": " + leilaoDao.salvarTodos(lote));
+                lote.clear();
+            }
+        }
+        leilaoDao.salvarTodos(lote);
+        return usuarios;
+    }
+
+    private static Map<String, Double> mede(Session session, final Usuario[] usuarios) {
+        final LeilaoDao leilaoDao = new LeilaoDao(session);
+        final UsuarioDao usuarioDao = new UsuarioDao(session);
+        final Instant inicio = Instant.now().minus(3, ChronoUnit.DAYS);
+        final Instant fim = Instant.now().minus(2, ChronoUnit.DAYS);
+
+        Map<String, Double> tempos = new LinkedHashMap<String, Double>();
+        tempos.put("novos (primeira pagina)", mediana(session, new Runnable() {
+            public void run() { leilaoDao.novos(0, 50); }
+        }));
+        tempos.put("antigos (primeira pagina)", mediana(session, new Runnable() {
+            public void run() { leilaoDao.antigos(0, 50); }
+        }));
+        tempos.put("porPeriodo (1 dia)", mediana(session, new Runnable() {
+            public void run() { leilaoDao.porPeriodo(inicio, fim); }
+        }));
+        tempos.put("disputadosEntre", mediana(session, new Runnable() {
+            public void run() { leilaoDao.disputadosEntre(reais(500), reais(510)); }
+        }));
+        tempos.put("total", mediana(session, new Runnable() {
+            public void run() { leilaoDao.total(); }
+        }));
+        tempos.put("listaLeiloesDoUsuario", mediana(session, new Runnable() {
+            public void run() { leilaoDao.listaLeiloesDoUsuario(usuarios[7]); }
+        }));
+        tempos.put("porNomeEEmail", mediana(session, new Runnable() {
+            public void run() { usuarioDao.porNomeEEmail("Usuario 7", "usuario7@pm73.com.br"); }
+        }));
+        return tempos;
+    }
+
+    private static double mediana(Session session, Runnable consulta) {
+        consulta.run();
+        session.clear();
+
+        double[] tempos = new double[REPETICOES];
+        for (int i = 0; i < REPETICOES; i++) {
+            long inicio = System.nanoTime();
+            consulta.run();
+            tempos[i] = (System.nanoTime() - inicio) / 1000000.0;
+            session.clear();
+        }
+        Arrays.sort(tempos);
+        return tempos[REPETICOES / 2];
+    }
+
+    private static void removeIndices(Session session) {
+        session.doWork(new Work() {
+            public void execute(Connection conexao) throws SQLException {
+                Statement statement = conexao.createStatement();
+                try {
+                    for (String indice : INDICES) {
+                        statement.execute("drop index " + indice);
+                    }
+                    // o HSQLDB nao guarda o nome dado a unique constraint do email
+                    ResultSet unica = statement.executeQuery("select constraint_name " +
+                            "from information_schema.table_constraints " +
+                            "where table_name = 'USUARIO' and constraint_type = 'UNIQUE'");
+                    List<String> nomes = new ArrayList<String>();
+                    while (unica.next()) nomes.add(unica.getString(1));
+                    for (String nome : nomes) {
+                        statement.execute("alter table Usuario drop constraint " + nome);
+                    }
+                } finally {
+                    statement.close();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,116 @@
+package br.com.pm73.benchmark;
+
+import br.com.pm73.dao.CriadorDeSessao;
+import br.com.pm73.dao.LeilaoDao;
+import br.com.pm73.dao.UsuarioDao;
+import br.com.pm73.dominio.Leilao;
+import br.com.pm73.dominio.Usuario;
+import br.com.pm73.infra.ConfiguracaoDoBanco;
+import org.hibernate.Session;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+
+/**
+ * Compara uma "requisicao" de listagem feita numa sessao comum e numa
+ * sessao somente leitura: tempo (mediana) e bytes alocados pela thread.
+ *
+ * Roda no perfil MEMORIA; o primeiro argumento e a quantidade de leiloes
+ * carregados por requisicao (padrao 10.000).
+ */
+public class BenchmarkDeLeitura {
+
+    private static final int REPETICOES = 30;
+    private static final int USUARIOS = 1000;
+
+    private interface Requisicao {
+        Session abre();
+    }
+
+    public static void main(String[] args) {
+        System.setProperty(ConfiguracaoDoBanco.PERFIL, "memoria");
+        final int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+
+        try {
+            populaBanco(quantidade);
+
+            Requisicao comum = new Requisicao() {
+                public Session abre() { return new CriadorDeSessao().getSession(); }
+            };
+            Requisicao somenteLeitura = new Requisicao() {
+                public Session abre() { return new CriadorDeSessao().getSessionSomenteLeitura(); }
+            };
+
+            System.out.println();
+            System.out.printf("%-28s %12s %16s%n", "listagem de " + quantidade, "mediana (ms)", "alocado (KB)");
+            for (int rodada = 0; rodada < 2; rodada++) {
+                // a primeira rodada so aquece o JIT
+                mede("sessao comum", comum, quantidade, rodada == 1);
+                mede("sessao somente leitura", somenteLeitura, quantidade, rodada == 1);
+            }
+        } finally {
+            CriadorDeSessao.encerra();
+        }
+    }
+
+    private static void mede(String nome, Requisicao requisicao, int quantidade, boolean imprime) {
+        double[] tempos = new double[REPETICOES];
+        long[] alocados = new long[REPETICOES];
+        for (int i = 0; i < REPETICOES; i++) {
+            long bytesAntes = alocadoPelaThread();
+            long inicio = System.nanoTime();
+
+            Session session = requisicao.abre();
+            try {
+                session.beginTransaction();
+                List<Leilao> leiloes = new LeilaoDao(session).novos(0, quantidade);
+                for (Leilao leilao : leiloes) {
+                    leilao.getDono().getNome();
+                }
+                session.flush();
+                session.getTransaction().commit();
+            } finally {
+                session.close();
+            }
+
+            tempos[i] = (System.nanoTime() - inicio) / 1000000.0;
+            alocados[i] = alocadoPelaThread() - bytesAntes;
+        }
+        Arrays.sort(tempos);
+        Arrays.sort(alocados);
+        if (imprime) {
+            System.out.printf("%-28s %12.3f %16d%n", nome, tempos[REPETICOES / 2], alocados[REPETICOES / 2] / 1024);
+        }
+    }
+
+    private static long alocadoPelaThread() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void populaBanco(int quantidade) {
+        Session session = new CriadorDeSessao().getSession();
+        try {
+            session.beginTransaction();
+            Usuario[] usuarios = new Usuario[USUARIOS];
+            for (int i = 0; i < USUARIOS; i++) {
+                usuarios[i] = new Usuario("Usuario " + i, "usuario" + i + "@pm73.com.br");
+                new UsuarioDao(session).salvar(usuarios[i]);
+            }
+            session.flush();
+
+            List<Leilao> lote = new ArrayList<Leilao>();
+            for (int i = 0; i < quantidade; i++) {
+                lote.add(new Leilao("Leilao " + i, reais(100.0 + i), usuarios[i % USUARIOS], false));
+            }
+            new LeilaoDao(session).salvarTodos(lote);
+            session.getTransaction().commit();
+        } finally {
+            session.close();
+        }
+    }
+}
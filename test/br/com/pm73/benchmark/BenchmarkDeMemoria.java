@@ -0,0 +1,120 @@
+package br.com.pm73.benchmark;
+
+import br.com.pm73.dao.CriadorDeSessao;
+import br.com.pm73.dao.LeilaoDao;
+import br.com.pm73.dao.UsuarioDao;
+import br.com.pm73.dominio.Lance;
+import br.com.pm73.dominio.Leilao;
+import br.com.pm73.dominio.Usuario;
+import br.com.pm73.infra.ConfiguracaoDoBanco;
+import org.hibernate.Session;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+
+/**
+ * Mede quanto heap cada lance carregado ocupa, e quanto disso vem da
+ * representacao da data: Calendar (como era), Instant (o que a API devolve)
+ * ou o long que as entidades guardam hoje.
+ *
+ * Roda no perfil MEMORIA; o primeiro argumento e a quantidade de lances
+ * (padrao 1.000.000). Com esse volume use algo como -Xmx2g.
+ */
+public class BenchmarkDeMemoria {
+
+    private static final int LANCES_POR_LEILAO = 10;
+
+    public static void main(String[] args) {
+        System.setProperty(ConfiguracaoDoBanco.PERFIL, "memoria");
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        System.out.printf("%-32s %10s%n", "data de " + quantidade + " lances", "bytes/lance");
+        double calendar = porItem(quantidade, new Calendar[quantidade], new Gerador() {
+            public Object gera(int i) { return Calendar.getInstance(); }
+        });
+        System.out.printf("%-32s %10.1f%n", "Calendar", calendar);
+        System.out.printf("%-32s %10.1f%n", "Instant", porItem(quantidade, new Instant[quantidade], new Gerador() {
+            public Object gera(int i) { return Instant.ofEpochMilli(System.currentTimeMillis() - i); }
+        }));
+        System.out.printf("%-32s %10.1f%n", "long", 8.0);
+
+        Session session = new CriadorDeSessao().getSession();
+        try {
+            session.beginTransaction();
+            populaBanco(session, quantidade);
+            session.getTransaction().commit();
+
+            System.out.println();
+            System.out.printf("%-32s %10s%n", "lances carregados", "bytes/lance");
+
+            long antes = heapUsado();
+            @SuppressWarnings("unchecked")
+            List<Lance> lances = session.createQuery("from Lance").setReadOnly(true).list();
+            long naSessao = heapUsado() - antes;
+            System.out.printf("%-32s %10.1f%n", "na sessao", naSessao / (double) lances.size());
+
+            session.clear();
+            long desanexados = heapUsado() - antes;
+            double porLance = desanexados / (double) lances.size();
+            System.out.printf("%-32s %10.1f%n", "desanexados", porLance);
+            // o campo era uma referencia de 4 bytes para um Calendar, hoje e um long
+            System.out.printf("%-32s %10.1f%n", "desanexados, com Calendar (est.)", porLance - 8 + calendar);
+        } finally {
+            session.close();
+            CriadorDeSessao.encerra();
+        }
+    }
+
+    private interface Gerador {
+        Object gera(int i);
+    }
+
+    private static double porItem(int quantidade, Object[] itens, Gerador gerador) {
+        long antes = heapUsado();
+        for (int i = 0; i < quantidade; i++) {
+            itens[i] = gerador.gera(i);
+        }
+        long depois = heapUsado();
+        // a referencia no array tambem conta, como contaria o campo na entidade
+        double bytes = (depois - antes) / (double) quantidade;
+        if (itens[quantidade - 1] == null) throw new IllegalStateException();
+        return bytes;
+    }
+
+    private static void populaBanco(Session session, int quantidade) {
+        Usuario usuario = new Usuario("Usuario", "usuario@pm73.com.br");
+        new UsuarioDao(session).salvar(usuario);
+        LeilaoDao leilaoDao = new LeilaoDao(session);
+
+        List<Leilao> lote = new ArrayList<Leilao>();
+        for (int i = 0; i < quantidade / LANCES_POR_LEILAO; i++) {
+            Leilao leilao = new Leilao("Leilao " + i, reais(100.0), usuario, false);
+            for (int j = 0; j < LANCES_POR_LEILAO; j++) {
+                leilao.adicionaLance(new Lance(Instant.now(), usuario, reais(100.0 + j), leilao));
+            }
+            lote.add(leilao);
+            if (lote.size() == 1000) {
+                leilaoDao.salvarTodos(lote);
+                lote.clear();
+            }
+        }
+        leilaoDao.salvarTodos(lote);
+    }
+
+    private static long heapUsado() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
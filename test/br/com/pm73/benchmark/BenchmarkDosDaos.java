@@ -0,0 +1,353 @@
+package br.com.pm73.benchmark;
+
+import br.com.pm73.dao.CriadorDeSessao;
+import br.com.pm73.dao.LeilaoDao;
+import br.com.pm73.dao.UsuarioDao;
+import br.com.pm73.dominio.Lance;
+import br.com.pm73.dominio.Leilao;
+import br.com.pm73.dominio.Usuario;
+import br.com.pm73.infra.ConfiguracaoDoBanco;
+import org.hibernate.Session;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+
+/**
+ * Mede as operacoes de LeilaoDao e UsuarioDao sobre uma base gerada com
+ * semente fixa: vazao, percentis de latencia e bytes alocados por operacao.
+ *
+ * Cada operacao passa por AQUECIMENTO iteracoes descartadas e MEDICOES
+ * iteracoes medidas, de DURACAO_DA_ITERACAO_MS cada, como o JMH faria. A
+ * sessao e limpa a cada operacao (o cache de segundo nivel continua
+ * valendo); as escritas rodam numa transacao desfeita no fim de cada
+ * iteracao, entao a base e a mesma para todas as operacoes.
+ *
+ * Roda no perfil MEMORIA. Argumentos: quantidade de leiloes (padrao
+ * 100.000), arquivo CSV de saida (padrao benchmark-daos.csv) e,
+ * opcionalmente, o CSV de uma execucao anterior para comparar; havendo
+ * regressao alem das tolerancias a saida do processo e 1.
+ */
+public class BenchmarkDosDaos {
+
+    private static final int AQUECIMENTO = 2;
+    private static final int MEDICOES = 5;
+    private static final long DURACAO_DA_ITERACAO_MS = 1000;
+    private static final int USUARIOS = 10000;
+    private static final long SEMENTE = 42;
+
+    // acima disso, em relacao ao CSV anterior, conta como regressao
+    private static final double PERDA_DE_VAZAO_TOLERADA = 0.10;
+    private static final double AUMENTO_DO_P99_TOLERADO = 0.20;
+
+    private static final String CABECALHO =
+            "operacao,leiloes,operacoes,ops_por_segundo,p50_us,p90_us,p99_us,p999_us,max_us,bytes_por_op";
+
+    private interface Operacao {
+        void executa(int i);
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty(ConfiguracaoDoBanco.PERFIL, "memoria");
+        int quantidade = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        String saida = args.length > 1 ? args[1] : "benchmark-daos.csv";
+        String referencia = args.length > 2 ? args[2] : null;
+
+        Map<String, Resultado> resultados;
+        Session session = new CriadorDeSessao().getSession();
+        try {
+            session.beginTransaction();
+            Usuario[] usuarios = populaBanco(session, quantidade);
+            session.getTransaction().commit();
+            session.clear();
+
+            resultados = mede(session, usuarios, quantidade);
+        } finally {
+            session.close();
+            CriadorDeSessao.encerra();
+        }
+
+        System.out.println();
+        System.out.printf("%-32s %10s %10s %10s %10s %10s %12s%n", "operacao",
+                "ops/s", "p50 (us)", "p90 (us)", "p99 (us)", "p99.9 (us)", "bytes/op");
+        for (Resultado resultado : resultados.values()) {
+            System.out.printf("%-32s %10.0f %10.1f %10.1f %10.1f %10.1f %12d%n", resultado.operacao,
+                    resultado.opsPorSegundo, resultado.p50, resultado.p90, resultado.p99,
+                    resultado.p999, resultado.bytesPorOperacao);
+        }
+        grava(saida, resultados.values());
+        System.out.println("resultados em " + saida);
+
+        if (referencia != null && comparaCom(referencia, resultados) > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Resultado> mede(final Session session, final Usuario[] usuarios,
+            final int quantidade) {
+        final LeilaoDao leilaoDao = new LeilaoDao(session);
+        final UsuarioDao usuarioDao = new UsuarioDao(session);
+        final Random aleatorio = new Random(SEMENTE);
+        final Instant agora = Instant.now();
+        final int primeiroId = ((Number) session.createQuery("select min(l.id) from Leilao l")
+                .uniqueResult()).intValue();
+
+        Map<String, Resultado> resultados = new LinkedHashMap<String, Resultado>();
+        adiciona(resultados, mede("LeilaoDao.salvar", session, quantidade, true, new Operacao() {
+            public void executa(int i) {
+                Leilao leilao = new Leilao("Novo " + i, reais(100.0), usuarios[i % USUARIOS], false);
+                leilao.adicionaLance(new Lance(agora, usuarios[(i + 1) % USUARIOS], reais(110.0), leilao));
+                leilaoDao.salvar(leilao);
+                session.flush();
+            }
+        }));
+        adiciona(resultados, mede("LeilaoDao.porId", session, quantidade, false, new Operacao() {
+            public void executa(int i) {
+                leilaoDao.porId(primeiroId + aleatorio.nextInt(quantidade)).getNome();
+            }
+        }));
+        adiciona(resultados, mede("LeilaoDao.novos", session, quantidade, false, new Operacao() {
+            public void executa(int i) {
+                leilaoDao.novos(aleatorio.nextInt(10), 50);
+            }
+        }));
+        adiciona(resultados, mede("LeilaoDao.antigos", session, quantidade, false, new Operacao() {
+            public void executa(int i) {
+                leilaoDao.antigos(aleatorio.nextInt(10), 50);
+            }
+        }));
+        adiciona(resultados, mede("LeilaoDao.porPeriodo", session, quantidade, false, new Operacao() {
+            public void executa(int i) {
+                Instant fim = agora.minus(aleatorio.nextInt(365), ChronoUnit.DAYS);
+                leilaoDao.porPeriodo(fim.minus(1, ChronoUnit.DAYS), fim);
+            }
+        }));
+        adiciona(resultados, mede("LeilaoDao.disputadosEntre", session, quantidade, false, new Operacao() {
+            public void executa(int i) {
+                int inicio = 10 + aleatorio.nextInt(10000);
+                leilaoDao.disputadosEntre(reais(inicio), reais(inicio + 10));
+            }
+        }));
+        adiciona(resultados, mede("LeilaoDao.total", session, quantidade, false, new Operacao() {
+            public void executa(int i) {
+                leilaoDao.total();
+            }
+        }));
+        adiciona(resultados, mede("LeilaoDao.listaLeiloesDoUsuario", session, quantidade, false, new Operacao() {
+            public void executa(int i) {
+                leilaoDao.listaLeiloesDoUsuario(usuarios[aleatorio.nextInt(USUARIOS)]);
+            }
+        }));
+        adiciona(resultados, mede("LeilaoDao.deletaEncerrados", session, quantidade, true, new Operacao() {
+            public void executa(int i) {
+                // desfeito logo em seguida, para que toda execucao apague a mesma coisa
+                leilaoDao.deletaEncerrados();
+                session.getTransaction().rollback();
+                session.beginTransaction();
+            }
+        }));
+        adiciona(resultados, mede("UsuarioDao.porId", session, quantidade, false, new Operacao() {
+            public void executa(int i) {
+                usuarioDao.porId(usuarios[aleatorio.nextInt(USUARIOS)].getId()).getNome();
+            }
+        }));
+        adiciona(resultados, mede("UsuarioDao.porNomeEEmail", session, quantidade, false, new Operacao() {
+            public void executa(int i) {
+                int n = aleatorio.nextInt(USUARIOS);
+                usuarioDao.porNomeEEmail("Usuario " + n, "usuario" + n + "@pm73.com.br");
+            }
+        }));
+        return resultados;
+    }
+
+    private static void adiciona(Map<String, Resultado> resultados, Resultado resultado) {
+        resultados.put(resultado.operacao, resultado);
+    }
+
+    private static Resultado mede(String nome, Session session, int quantidade, boolean escreve,
+            Operacao operacao) {
+        Latencias latencias = new Latencias();
+        long operacoes = 0;
+        long nanosMedidos = 0;
+        long bytes = 0;
+
+        for (int iteracao = 0; iteracao < AQUECIMENTO + MEDICOES; iteracao++) {
+            boolean medida = iteracao >= AQUECIMENTO;
+            if (escreve) session.beginTransaction();
+
+            long fimDaIteracao = System.nanoTime() + DURACAO_DA_ITERACAO_MS * 1000000;
+            long inicioDaIteracao = System.nanoTime();
+            long bytesAntes = alocadoPelaThread();
+            int i = 0;
+            long agora;
+            do {
+                long inicio = System.nanoTime();
+                operacao.executa(i++);
+                agora = System.nanoTime();
+                if (medida) latencias.adiciona(agora - inicio);
+                session.clear();
+            } while (agora < fimDaIteracao);
+
+            if (medida) {
+                bytes += alocadoPelaThread() - bytesAntes;
+                nanosMedidos += agora - inicioDaIteracao;
+                operacoes += i;
+            }
+            if (escreve) session.getTransaction().rollback();
+        }
+        System.out.println(nome + ": " + operacoes + " operacoes medidas");
+        return new Resultado(nome, quantidade, operacoes, operacoes / (nanosMedidos / 1e9),
+                latencias, bytes / operacoes);
+    }
+
+    private static Usuario[] populaBanco(Session session, int quantidade) {
+        UsuarioDao usuarioDao = new UsuarioDao(session);
+        LeilaoDao leilaoDao = new LeilaoDao(session);
+        Random aleatorio = new Random(SEMENTE);
+        Instant agora = Instant.now();
+
+        Usuario[] usuarios = new Usuario[USUARIOS];
+        for (int i = 0; i < USUARIOS; i++) {
+            usuarios[i] = new Usuario("Usuario " + i, "usuario" + i + "@pm73.com.br");
+            usuarioDao.salvar(usuarios[i]);
+        }
+        session.flush();
+
+        List<Leilao> lote = new ArrayList<Leilao>();
+        for (int i = 0; i < quantidade; i++) {
+            Leilao leilao = new Leilao("Leilao " + i, reais(10.0 + aleatorio.nextInt(10000)),
+                    usuarios[aleatorio.nextInt(USUARIOS)], aleatorio.nextBoolean());
+            Instant abertura = agora.minus(aleatorio.nextInt(60 * 24 * 365), ChronoUnit.MINUTES);
+            leilao.setDataAbertura(abertura);
+            if (aleatorio.nextInt(10) < 3) leilao.encerra();
+
+            if (i % 10 == 0) {
+                for (int j = 0; j < 4; j++) {
+                    leilao.adicionaLance(new Lance(abertura, usuarios[aleatorio.nextInt(USUARIOS)],
+                            leilao.getValorInicialEmCentavos() + j * 100, leilao));
+                }
+            }
+            lote.add(leilao);
+
+            if (lote.size() == 10000) {
+                System.out.println("populando " + (i + 1) + "/" + quantidade + ": " + leilaoDao.salvarTodos(lote));
+                lote.clear();
+            }
+        }
+        leilaoDao.salvarTodos(lote);
+        return usuarios;
+    }
+
+    private static long alocadoPelaThread() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static void grava(String arquivo, Iterable<Resultado> resultados) throws IOException {
+        PrintWriter saida = new PrintWriter(new FileWriter(arquivo));
+        try {
+            saida.println(CABECALHO);
+            for (Resultado resultado : resultados) {
+                saida.println(resultado.emCsv());
+            }
+        } finally {
+            saida.close();
+        }
+    }
+
+    /**
+     * Compara com o CSV de uma execucao anterior e devolve quantas operacoes
+     * regrediram: perderam vazao ou tiveram o p99 aumentado alem do tolerado.
+     */
+    private static int comparaCom(String arquivo, Map<String, Resultado> atuais) throws IOException {
+        System.out.println();
+        System.out.printf("%-32s %10s %10s%n", "comparado com " + arquivo, "ops/s", "p99");
+        int regressoes = 0;
+        BufferedReader entrada = new BufferedReader(new FileReader(arquivo));
+        try {
+            entrada.readLine();
+            String linha;
+            while ((linha = entrada.readLine()) != null) {
+                String[] campos = linha.split(",");
+                Resultado atual = atuais.get(campos[0]);
+                if (atual == null) continue;
+
+                double vazao = atual.opsPorSegundo / Double.parseDouble(campos[3]) - 1;
+                double p99 = atual.p99 / Double.parseDouble(campos[6]) - 1;
+                boolean regrediu = vazao < -PERDA_DE_VAZAO_TOLERADA || p99 > AUMENTO_DO_P99_TOLERADO;
+                if (regrediu) regressoes++;
+                System.out.printf("%-32s %+9.1f%% %+9.1f%%%s%n", campos[0], vazao * 100, p99 * 100,
+                        regrediu ? "  REGRESSAO" : "");
+            }
+        } finally {
+            entrada.close();
+        }
+        return regressoes;
+    }
+
+    private static class Latencias {
+        private long[] nanos = new long[1 << 16];
+        private int tamanho;
+
+        void adiciona(long valor) {
+            if (tamanho == nanos.length) nanos = Arrays.copyOf(nanos, tamanho * 2);
+            nanos[tamanho++] = valor;
+        }
+
+        long[] ordenadas() {
+            long[] copia = Arrays.copyOf(nanos, tamanho);
+            Arrays.sort(copia);
+            return copia;
+        }
+    }
+
+    private static class Resultado {
+        final String operacao;
+        final int leiloes;
+        final long operacoes;
+        final double opsPorSegundo;
+        final double p50, p90, p99, p999, maximo;
+        final long bytesPorOperacao;
+
+        Resultado(String operacao, int leiloes, long operacoes, double opsPorSegundo,
+                Latencias latencias, long bytesPorOperacao) {
+            this.operacao = operacao;
+            this.leiloes = leiloes;
+            this.operacoes = operacoes;
+            this.opsPorSegundo = opsPorSegundo;
+            this.bytesPorOperacao = bytesPorOperacao;
+
+            long[] ordenadas = latencias.ordenadas();
+            this.p50 = percentil(ordenadas, 0.50);
+            this.p90 = percentil(ordenadas, 0.90);
+            this.p99 = percentil(ordenadas, 0.99);
+            this.p999 = percentil(ordenadas, 0.999);
+            this.maximo = ordenadas[ordenadas.length - 1] / 1000.0;
+        }
+
+        private static double percentil(long[] ordenadas, double fracao) {
+            int indice = (int) Math.ceil(fracao * ordenadas.length) - 1;
+            return ordenadas[Math.max(indice, 0)] / 1000.0;
+        }
+
+        String emCsv() {
+            return String.format(Locale.ROOT, "%s,%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f,%d",
+                    operacao, leiloes, operacoes, opsPorSegundo, p50, p90, p99, p999, maximo,
+                    bytesPorOperacao);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package br.com.pm73.dao;
+
+import br.com.pm73.dominio.Lance;
+import br.com.pm73.dominio.Leilao;
+import br.com.pm73.dominio.Usuario;
+import org.hibernate.Session;
+import org.hibernate.StaleObjectStateException;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Conta os SQLs das alteracoes parciais de LeilaoDao, que substituiram o
+ * merge no atualiza. Nos leiloes destacados conta todo statement
+ * preparado, inclusive SELECTs.
+ */
+public class AtualizacaoParcialTest {
+    private Session session;
+    private LeilaoDao leilaoDao;
+    private Leilao xbox;
+
+    @Before
+    public void antes() {
+        session = new CriadorDeSessao().getSession();
+        leilaoDao = new LeilaoDao(session);
+        UsuarioDao usuarioDao = new UsuarioDao(session);
+        session.beginTransaction();
+
+        Usuario dono = new Usuario("Mauricio", "mauricio@mauricio.com.br");
+        Usuario maria = new Usuario("Maria", "maria@mauricio.com.br");
+        usuarioDao.salvar(dono);
+        usuarioDao.salvar(maria);
+
+        xbox = new Leilao("Xbox", reais(100.0), dono, false);
+        xbox.adicionaLance(new Lance(Instant.now(), maria, reais(110.0), xbox));
+        xbox.adicionaLance(new Lance(Instant.now(), maria, reais(120.0), xbox));
+        leilaoDao.salvar(xbox);
+        session.flush();
+        session.clear();
+    }
+
+    @After
+    public void depois() {
+        session.getTransaction().rollback();
+        session.close();
+    }
+
+    @Test
+    public void entidadesUsamDynamicUpdate() {
+        SessionFactoryImplementor fabrica = (SessionFactoryImplementor) session.getSessionFactory();
+        for (Class<?> entidade : new Class<?>[] { Leilao.class, Lance.class }) {
+            EntityPersister persister = fabrica.getEntityPersister(entidade.getName());
+            assertTrue(entidade.getSimpleName(), persister.getEntityMetamodel().isDynamicUpdate());
+        }
+    }
+
+    @Test
+    public void encerrarUmLeilaoDaSessaoDisparaUmUnicoStatement() {
+        Leilao leilao = leilaoDao.porId(xbox.getId());
+
+        long inicio = statements();
+        leilaoDao.encerra(leilao);
+        session.flush();
+
+        assertEquals(1, statements() - inicio);
+        session.clear();
+        assertTrue(leilaoDao.porId(xbox.getId()).isEncerrado());
+    }
+
+    @Test
+    public void encerrarUmLeilaoDestacadoDisparaUmUnicoStatement() {
+        long inicio = statements();
+        leilaoDao.encerra(xbox);
+        session.flush();
+
+        // nem SELECT antes nem UPDATE dos lances depois
+        assertEquals(1, statements() - inicio);
+        session.clear();
+        assertTrue(xbox.isEncerrado());
+        Leilao encerrado = leilaoDao.porId(xbox.getId());
+        assertTrue(encerrado.isEncerrado());
+        assertEquals(2, encerrado.getLances().size());
+    }
+
+    @Test
+    public void atualizaGravaSoOQueMudouNoLeilao() {
+        xbox.setNome("Xbox One");
+        xbox.setValorInicial(reais(150.0));
+
+        long updates = estatisticas().getEntityUpdateCount();
+        leilaoDao.atualiza(xbox);
+        session.flush();
+        session.clear();
+
+        assertEquals(1, estatisticas().getEntityUpdateCount() - updates);
+        Leilao atualizado = leilaoDao.porId(xbox.getId());
+        assertEquals("Xbox One", atualizado.getNome());
+        assertEquals(reais(150.0), atualizado.getValorInicial());
+        assertEquals(2, atualizado.getQuantidadeDeLances());
+        assertEquals(1, atualizado.getVersao());
+    }
+
+    @Test
+    public void atualizaLeilaoDestacadoComLanceNovoGravaOLanceEOsCamposMantidos() {
+        Usuario maria = xbox.getLances().get(0).getUsuario();
+        xbox.adicionaLance(new Lance(Instant.now(), maria, reais(130.0), xbox));
+        xbox.setNome("Xbox One");
+
+        leilaoDao.atualiza(xbox);
+        session.flush();
+        session.clear();
+
+        Leilao atualizado = leilaoDao.porId(xbox.getId());
+        assertEquals("Xbox One", atualizado.getNome());
+        assertEquals(3, atualizado.getLances().size());
+        assertEquals(3, atualizado.getQuantidadeDeLances());
+        assertEquals(reais(130.0), atualizado.getMaiorLance());
+        assertEquals(maria.getId(), atualizado.getVencedor().getId());
+    }
+
+    @Test
+    public void atualizaLeilaoQueNuncaFoiSalvoGravaUmNovo() {
+        Leilao novo = new Leilao("Playstation", reais(200.0), xbox.getDono(), false);
+
+        long total = leilaoDao.total();
+        leilaoDao.atualiza(novo);
+        session.flush();
+
+        assertEquals(total + 1, (long) leilaoDao.total());
+    }
+
+    @Test
+    public void alteracoesSeguidasDeUmLeilaoDestacadoAcompanhamAVersao() {
+        long inicio = statements();
+        leilaoDao.renomeia(xbox, "Xbox One");
+        leilaoDao.alteraValorInicial(xbox, reais(150.0));
+        session.flush();
+
+        assertEquals(2, statements() - inicio);
+        assertEquals(2, xbox.getVersao());
+        Leilao alterado = leilaoDao.porId(xbox.getId());
+        assertEquals("Xbox One", alterado.getNome());
+        assertEquals(reais(150.0), alterado.getValorInicial());
+        assertEquals(2, alterado.getVersao());
+    }
+
+    @Test
+    public void renomearComVersaoAntigaDeveFalhar() {
+        Leilao antigo = leilaoDao.porId(xbox.getId());
+        session.clear();
+        leilaoDao.alteraValorInicial(leilaoDao.porId(xbox.getId()), reais(90.0));
+        session.flush();
+        session.clear();
+
+        try {
+            leilaoDao.renomeia(antigo, "Playstation");
+            throw new AssertionError("deveria ter recusado a versao antiga");
+        } catch (StaleObjectStateException esperado) {
+            assertEquals("Xbox", leilaoDao.porId(xbox.getId()).getNome());
+        }
+    }
+
+    private Statistics estatisticas() {
+        return session.getSessionFactory().getStatistics();
+    }
+
+    private long statements() {
+        return estatisticas().getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,132 @@
+package br.com.pm73.dao;
+
+import br.com.pm73.dominio.Leilao;
+import br.com.pm73.dominio.Usuario;
+import br.com.pm73.infra.EstatisticasDoCache;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * O cache so e populado com dados confirmados, entao aqui cada passo roda
+ * numa sessao com commit e o @After apaga o que foi gravado.
+ */
+public class CacheDeSegundoNivelTest {
+
+    private Usuario dono;
+
+    @Before
+    public void antes() {
+        Session session = new CriadorDeSessao().getSession();
+        session.beginTransaction();
+        dono = new Usuario("Cache", "cache@pm73.com.br");
+        new UsuarioDao(session).salvar(dono);
+        session.getTransaction().commit();
+        session.close();
+    }
+
+    @After
+    public void depois() {
+        Session session = new CriadorDeSessao().getSession();
+        session.beginTransaction();
+        session.createQuery("delete from Leilao l where l.dono.id = :dono")
+                .setParameter("dono", dono.getId()).executeUpdate();
+        session.createQuery("delete from Usuario u where u.id = :dono")
+                .setParameter("dono", dono.getId()).executeUpdate();
+        session.getTransaction().commit();
+        session.close();
+    }
+
+    @Test
+    public void usuarioPorIdDeveVirDoCacheNaSegundaSessao() {
+        EstatisticasDoCache antes = CriadorDeSessao.getEstatisticasDoCache();
+
+        Session session = new CriadorDeSessao().getSession();
+        assertEquals("Cache", new UsuarioDao(session).porId(dono.getId()).getNome());
+        session.close();
+
+        EstatisticasDoCache depois = CriadorDeSessao.getEstatisticasDoCache();
+        assertTrue(depois.getAcertosDeEntidades() > antes.getAcertosDeEntidades());
+    }
+
+    @Test
+    public void porNomeEEmailDeveVirDoCacheDeConsultas() {
+        buscaPorNomeEEmail();
+        EstatisticasDoCache antes = CriadorDeSessao.getEstatisticasDoCache();
+
+        Usuario encontrado = buscaPorNomeEEmail();
+
+        EstatisticasDoCache depois = CriadorDeSessao.getEstatisticasDoCache();
+        assertEquals(dono.getId(), encontrado.getId());
+        assertEquals(antes.getAcertosDeConsultas() + 1, depois.getAcertosDeConsultas());
+    }
+
+    @Test
+    public void totalDeveSerInvalidadoAoSalvarLeilao() {
+        long inicial = total();
+        assertEquals(inicial, total());
+
+        Session session = new CriadorDeSessao().getSession();
+        session.beginTransaction();
+        new LeilaoDao(session).salvar(new Leilao("Xbox", reais(100.0), dono, false));
+        session.getTransaction().commit();
+        session.close();
+
+        assertEquals(inicial + 1, total());
+    }
+
+    @Test
+    public void totalDeveSerInvalidadoAoDeletarEncerrados() {
+        Session session = new CriadorDeSessao().getSession();
+        session.beginTransaction();
+        Leilao encerrado = new Leilao("Geladeira", reais(100.0), dono, false);
+        encerrado.encerra();
+        new LeilaoDao(session).salvar(encerrado);
+        new LeilaoDao(session).salvar(new Leilao("Xbox", reais(100.0), dono, false));
+        session.getTransaction().commit();
+        session.close();
+
+        long antes = total();
+
+        session = new CriadorDeSessao().getSession();
+        session.beginTransaction();
+        new LeilaoDao(session).deletaEncerrados();
+        session.getTransaction().commit();
+        session.close();
+
+        assertEquals(antes, total());
+        assertEquals(null, porId(encerrado.getId()));
+    }
+
+    private Usuario buscaPorNomeEEmail() {
+        Session session = new CriadorDeSessao().getSession();
+        try {
+            return new UsuarioDao(session).porNomeEEmail("Cache", "cache@pm73.com.br");
+        } finally {
+            session.close();
+        }
+    }
+
+    private long total() {
+        Session session = new CriadorDeSessao().getSession();
+        try {
+            return new LeilaoDao(session).total();
+        } finally {
+            session.close();
+        }
+    }
+
+    private Leilao porId(int id) {
+        Session session = new CriadorDeSessao().getSession();
+        try {
+            return new LeilaoDao(session).porId(id);
+        } finally {
+            session.close();
+        }
+    }
+}
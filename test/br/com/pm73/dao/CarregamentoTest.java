@@ -0,0 +1,135 @@
+package br.com.pm73.dao;
+
+import br.com.pm73.dominio.Lance;
+import br.com.pm73.dominio.Leilao;
+import br.com.pm73.dominio.Usuario;
+import org.hibernate.Session;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Conta quantos SQLs cada Carregamento dispara ao percorrer o resultado.
+ */
+public class CarregamentoTest {
+    private Session session;
+    private LeilaoDao leilaoDao;
+    private Usuario licitante;
+
+    @Before
+    public void antes() {
+        session = new CriadorDeSessao().getSession();
+        leilaoDao = new LeilaoDao(session);
+        UsuarioDao usuarioDao = new UsuarioDao(session);
+        session.beginTransaction();
+
+        licitante = new Usuario("Maria", "maria@mauricio.com.br");
+        usuarioDao.salvar(licitante);
+        for (int i = 0; i < 5; i++) {
+            Usuario dono = new Usuario("Dono " + i, "dono" + i + "@mauricio.com.br");
+            usuarioDao.salvar(dono);
+
+            Leilao leilao = new Leilao("Leilao " + i, reais(100.0), dono, false);
+            leilao.adicionaLance(new Lance(Instant.now(), licitante, reais(110.0), leilao));
+            leilao.adicionaLance(new Lance(Instant.now(), licitante, reais(120.0), leilao));
+            leilaoDao.salvar(leilao);
+        }
+        session.flush();
+        session.clear();
+        session.getSessionFactory().getCache().evictEntityRegions();
+    }
+
+    @After
+    public void depois() {
+        session.getTransaction().rollback();
+        session.close();
+    }
+
+    @Test
+    public void semJoinOsDonosVemNumaUnicaConsultaEmLote() {
+        long inicio = statements();
+        tocaDonos(leilaoDao.novos(Carregamento.SO_LEILAO));
+
+        assertEquals(2, statements() - inicio);
+    }
+
+    @Test
+    public void comDonoNaoDisparaOutraConsulta() {
+        long inicio = statements();
+        tocaDonos(leilaoDao.novos(Carregamento.COM_DONO));
+
+        assertEquals(1, statements() - inicio);
+    }
+
+    @Test
+    public void comLancesNaoDisparaOutraConsulta() {
+        long inicio = statements();
+        List<Leilao> leiloes = leilaoDao.novos(Carregamento.COM_LANCES);
+        for (Leilao leilao : leiloes) {
+            assertEquals(2, leilao.getLances().size());
+        }
+
+        assertEquals(5, leiloes.size());
+        assertEquals(1, statements() - inicio);
+    }
+
+    @Test
+    public void completoTrazTudoNumSoSelect() {
+        long inicio = statements();
+        List<Leilao> leiloes = leilaoDao.novos(Carregamento.COMPLETO);
+        tocaDonos(leiloes);
+        tocaLicitantes(leiloes);
+
+        assertEquals(5, leiloes.size());
+        assertEquals(1, statements() - inicio);
+    }
+
+    @Test
+    public void semJoinTocarTudoCustaUmaConsultaPorAssociacao() {
+        long inicio = statements();
+        List<Leilao> leiloes = leilaoDao.novos(Carregamento.SO_LEILAO);
+        tocaDonos(leiloes);
+        tocaLicitantes(leiloes);
+
+        // leiloes, donos (que vem no mesmo lote dos vencedores, ja com os
+        // licitantes) e lances
+        assertEquals(3, statements() - inicio);
+    }
+
+    @Test
+    public void leiloesDoUsuarioCompletoTrazTudoNumSoSelect() {
+        long inicio = statements();
+        List<Leilao> leiloes = leilaoDao.listaLeiloesDoUsuario(licitante, Carregamento.COMPLETO);
+        tocaDonos(leiloes);
+        tocaLicitantes(leiloes);
+
+        assertEquals(5, leiloes.size());
+        assertEquals(1, statements() - inicio);
+    }
+
+    private void tocaDonos(List<Leilao> leiloes) {
+        for (Leilao leilao : leiloes) {
+            leilao.getDono().getNome();
+        }
+    }
+
+    private void tocaLicitantes(List<Leilao> leiloes) {
+        for (Leilao leilao : leiloes) {
+            for (Lance lance : leilao.getLances()) {
+                lance.getUsuario().getNome();
+            }
+        }
+    }
+
+    private long statements() {
+        Statistics estatisticas = session.getSessionFactory().getStatistics();
+        return estatisticas.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,195 @@
+package br.com.pm73.dao;
+
+import br.com.pm73.dominio.Dinheiro;
+import br.com.pm73.dominio.Lance;
+import br.com.pm73.dominio.Leilao;
+import br.com.pm73.dominio.Usuario;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+import static org.junit.Assert.assertEquals;
+
+public class EstatisticasDeLeiloesTest {
+    private Session session;
+    private LeilaoDao leilaoDao;
+    private Usuario mauricio;
+    private Usuario maria;
+    private Usuario jose;
+
+    @Before
+    public void antes() {
+        session = new CriadorDeSessao().getSession();
+        leilaoDao = new LeilaoDao(session);
+        UsuarioDao usuarioDao = new UsuarioDao(session);
+        session.beginTransaction();
+
+        mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
+        maria = new Usuario("Maria", "maria@mauricio.com.br");
+        jose = new Usuario("Jose", "jose@mauricio.com.br");
+        usuarioDao.salvar(mauricio);
+        usuarioDao.salvar(maria);
+        usuarioDao.salvar(jose);
+    }
+
+    @After
+    public void depois() {
+        session.getTransaction().rollback();
+        session.close();
+    }
+
+    @Test
+    public void semLeiloesTudoEZero() {
+        EstatisticasDeLeiloes estatisticas = leilaoDao.estatisticas(new FiltroDeLeiloes().doDono(mauricio));
+
+        assertEquals(0, estatisticas.getLeiloes());
+        assertEquals(0, estatisticas.getLances());
+        assertEquals(Dinheiro.ZERO, estatisticas.getMaiorLance());
+        assertEquals(Dinheiro.ZERO, estatisticas.getValorInicialMedio());
+        assertEquals(0.0, estatisticas.getLancesPorLicitante(), 0.0001);
+    }
+
+    @Test
+    public void deveAgregarLeiloesELancesDoFiltro() {
+        Leilao xbox = new Leilao("Xbox", reais(500.0), mauricio, false);
+        xbox.adicionaLance(new Lance(Instant.now(), maria, reais(510.0), xbox));
+        xbox.adicionaLance(new Lance(Instant.now(), jose, reais(520.0), xbox));
+        xbox.adicionaLance(new Lance(Instant.now(), maria, reais(530.0), xbox));
+        Leilao geladeira = new Leilao("Geladeira", reais(700.0), mauricio, false);
+        geladeira.adicionaLance(new Lance(Instant.now(), maria, reais(750.0), geladeira));
+        geladeira.encerra();
+        Leilao semLances = new Leilao("Fogao", reais(300.0), mauricio, false);
+        Leilao deOutroDono = new Leilao("Tv", reais(900.0), maria, false);
+        deOutroDono.adicionaLance(new Lance(Instant.now(), jose, reais(1000.0), deOutroDono));
+        leilaoDao.salvar(xbox);
+        leilaoDao.salvar(geladeira);
+        leilaoDao.salvar(semLances);
+        leilaoDao.salvar(deOutroDono);
+
+        EstatisticasDeLeiloes estatisticas = leilaoDao.estatisticas(new FiltroDeLeiloes().doDono(mauricio));
+
+        assertEquals(3, estatisticas.getLeiloes());
+        assertEquals(1, estatisticas.getEncerrados());
+        assertEquals(2, estatisticas.getAbertos());
+        assertEquals(reais(300.0), estatisticas.getMenorValorInicial());
+        assertEquals(reais(700.0), estatisticas.getMaiorValorInicial());
+        assertEquals(reais(500.0), estatisticas.getValorInicialMedio());
+        assertEquals(reais(1500.0), estatisticas.getSomaDosValoresIniciais());
+        assertEquals(4, estatisticas.getLances());
+        assertEquals(reais(510.0), estatisticas.getMenorLance());
+        assertEquals(reais(750.0), estatisticas.getMaiorLance());
+        assertEquals(reais(577.5), estatisticas.getLanceMedio());
+        assertEquals(reais(2310.0), estatisticas.getSomaDosLances());
+        assertEquals(2, estatisticas.getLicitantes());
+        assertEquals(2.0, estatisticas.getLancesPorLicitante(), 0.0001);
+    }
+
+    @Test
+    public void deveFiltrarPorPeriodoESituacao() {
+        Leilao antigo = new Leilao("Xbox", reais(500.0), mauricio, true);
+        antigo.setDataAbertura(Instant.now().minus(10, ChronoUnit.DAYS));
+        Leilao recente = new Leilao("Geladeira", reais(700.0), mauricio, true);
+        recente.setDataAbertura(Instant.now().minus(2, ChronoUnit.DAYS));
+        Leilao novo = new Leilao("Fogao", reais(300.0), mauricio, false);
+        novo.setDataAbertura(Instant.now().minus(2, ChronoUnit.DAYS));
+        leilaoDao.salvar(antigo);
+        leilaoDao.salvar(recente);
+        leilaoDao.salvar(novo);
+
+        FiltroDeLeiloes filtro = new FiltroDeLeiloes()
+                .doDono(mauricio)
+                .abertosEntre(Instant.now().minus(5, ChronoUnit.DAYS), Instant.now())
+                .usados(true)
+                .encerrados(false);
+        EstatisticasDeLeiloes estatisticas = leilaoDao.estatisticas(filtro);
+
+        assertEquals(1, estatisticas.getLeiloes());
+        assertEquals(reais(700.0), estatisticas.getMaiorValorInicial());
+    }
+
+    @Test
+    public void deveAgruparPorDono() {
+        Leilao xbox = new Leilao("Xbox", reais(500.0), mauricio, false);
+        xbox.adicionaLance(new Lance(Instant.now(), maria, reais(510.0), xbox));
+        xbox.adicionaLance(new Lance(Instant.now(), jose, reais(520.0), xbox));
+        Leilao geladeira = new Leilao("Geladeira", reais(700.0), mauricio, false);
+        geladeira.encerra();
+        Leilao tv = new Leilao("Tv", reais(900.0), maria, false);
+        tv.adicionaLance(new Lance(Instant.now(), jose, reais(1000.0), tv));
+        Leilao semLances = new Leilao("Fogao", reais(300.0), jose, false);
+        leilaoDao.salvar(xbox);
+        leilaoDao.salvar(geladeira);
+        leilaoDao.salvar(tv);
+        leilaoDao.salvar(semLances);
+
+        Map<Integer, EstatisticasDeLeiloes> porDono = leilaoDao.estatisticasPor(AgrupamentoDeLeiloes.DONO,
+                new FiltroDeLeiloes().abertosEntre(Instant.now().minus(1, ChronoUnit.DAYS), Instant.now()));
+
+        // o banco pode ter leiloes de outros donos no periodo; os destes vem na ordem dos ids
+        List<Integer> donos = new ArrayList<Integer>(porDono.keySet());
+        donos.retainAll(Arrays.asList(mauricio.getId(), maria.getId(), jose.getId()));
+        assertEquals(Arrays.asList(mauricio.getId(), maria.getId(), jose.getId()), donos);
+        EstatisticasDeLeiloes doMauricio = porDono.get(mauricio.getId());
+        assertEquals(2, doMauricio.getLeiloes());
+        assertEquals(1, doMauricio.getEncerrados());
+        assertEquals(reais(1200.0), doMauricio.getSomaDosValoresIniciais());
+        assertEquals(2, doMauricio.getLances());
+        assertEquals(reais(520.0), doMauricio.getMaiorLance());
+        assertEquals(2, doMauricio.getLicitantes());
+        EstatisticasDeLeiloes daMaria = porDono.get(maria.getId());
+        assertEquals(1, daMaria.getLeiloes());
+        assertEquals(1, daMaria.getLances());
+        assertEquals(reais(1000.0), daMaria.getMaiorLance());
+        EstatisticasDeLeiloes doJose = porDono.get(jose.getId());
+        assertEquals(1, doJose.getLeiloes());
+        assertEquals(0, doJose.getLances());
+        assertEquals(Dinheiro.ZERO, doJose.getMaiorLance());
+    }
+
+    @Test
+    public void deveAgruparPorSituacaoEUso() {
+        Leilao xbox = new Leilao("Xbox", reais(500.0), mauricio, true);
+        xbox.adicionaLance(new Lance(Instant.now(), maria, reais(510.0), xbox));
+        Leilao geladeira = new Leilao("Geladeira", reais(700.0), mauricio, false);
+        geladeira.adicionaLance(new Lance(Instant.now(), maria, reais(750.0), geladeira));
+        geladeira.adicionaLance(new Lance(Instant.now(), jose, reais(800.0), geladeira));
+        geladeira.encerra();
+        Leilao fogao = new Leilao("Fogao", reais(300.0), mauricio, false);
+        leilaoDao.salvar(xbox);
+        leilaoDao.salvar(geladeira);
+        leilaoDao.salvar(fogao);
+        FiltroDeLeiloes doMauricio = new FiltroDeLeiloes().doDono(mauricio);
+
+        Map<Boolean, EstatisticasDeLeiloes> porSituacao =
+                leilaoDao.estatisticasPor(AgrupamentoDeLeiloes.ENCERRADO, doMauricio);
+        assertEquals(2, porSituacao.size());
+        assertEquals(2, porSituacao.get(false).getLeiloes());
+        assertEquals(1, porSituacao.get(false).getLances());
+        assertEquals(1, porSituacao.get(true).getLeiloes());
+        assertEquals(2, porSituacao.get(true).getLances());
+        assertEquals(reais(775.0), porSituacao.get(true).getLanceMedio());
+
+        Map<Boolean, EstatisticasDeLeiloes> porUso =
+                leilaoDao.estatisticasPor(AgrupamentoDeLeiloes.USADO, doMauricio);
+        assertEquals(2, porUso.size());
+        assertEquals(1, porUso.get(true).getLeiloes());
+        assertEquals(reais(510.0), porUso.get(true).getMaiorLance());
+        assertEquals(2, porUso.get(false).getLeiloes());
+        assertEquals(1, porUso.get(false).getEncerrados());
+        assertEquals(reais(1000.0), porUso.get(false).getSomaDosValoresIniciais());
+    }
+
+    @Test
+    public void valorInicialMedioDeUsuarioSemLancesEZero() {
+        assertEquals(Dinheiro.ZERO, leilaoDao.getValorInicialMedioDoUsuario(jose));
+    }
+}
@@ -0,0 +1,158 @@
+package br.com.pm73.dao;
+
+import br.com.pm73.dominio.Lance;
+import br.com.pm73.dominio.Leilao;
+import br.com.pm73.dominio.Usuario;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * O expurgo confirma uma transacao por lote e so roda fora de uma
+ * transacao, entao aqui os dados sao gravados de verdade e o @After apaga
+ * o que sobrou.
+ */
+public class ExpurgoDeLeiloesTest {
+
+    private Session session;
+    private LeilaoDao leilaoDao;
+    private Usuario dono;
+    private Usuario licitante;
+
+    @Before
+    public void antes() {
+        session = new CriadorDeSessao().getSession();
+        leilaoDao = new LeilaoDao(session);
+        session.beginTransaction();
+        dono = new Usuario("Dono", "dono@expurgo.com.br");
+        licitante = new Usuario("Licitante", "licitante@expurgo.com.br");
+        new UsuarioDao(session).salvar(dono);
+        new UsuarioDao(session).salvar(licitante);
+        session.getTransaction().commit();
+        session.beginTransaction();
+    }
+
+    @After
+    public void depois() {
+        if (session.getTransaction().isActive()) {
+            session.getTransaction().rollback();
+        }
+        session.beginTransaction();
+        session.createQuery("delete from Lance lance where lance.usuario.id = :licitante")
+                .setParameter("licitante", licitante.getId()).executeUpdate();
+        session.createQuery("delete from Leilao l where l.dono.id = :dono")
+                .setParameter("dono", dono.getId()).executeUpdate();
+        session.createQuery("delete from Usuario u where u.id in (:dono, :licitante)")
+                .setParameter("dono", dono.getId())
+                .setParameter("licitante", licitante.getId()).executeUpdate();
+        session.getTransaction().commit();
+        session.close();
+    }
+
+    private Leilao leilao(String nome, boolean encerrado, int quantidadeDeLances) {
+        Leilao leilao = new Leilao(nome, reais(100.0), dono, false);
+        for (int i = 0; i < quantidadeDeLances; i++) {
+            leilao.adicionaLance(new Lance(Instant.now(), licitante, reais(110.0 + i), leilao));
+        }
+        if (encerrado) leilao.encerra();
+        leilaoDao.salvar(leilao);
+        return leilao;
+    }
+
+    @Test
+    public void deveApagarEncerradosELancesEmLotes() {
+        for (int i = 0; i < 7; i++) {
+            leilao("Encerrado " + i, true, 2);
+        }
+        Leilao aberto = leilao("Aberto", false, 3);
+        session.getTransaction().commit();
+
+        final List<ResultadoDoExpurgo> progresso = new ArrayList<ResultadoDoExpurgo>();
+        ResultadoDoExpurgo resultado = leilaoDao.expurgaEncerrados(3, new Processador<ResultadoDoExpurgo>() {
+            public void processa(ResultadoDoExpurgo parcial) {
+                progresso.add(parcial);
+            }
+        });
+
+        assertEquals(3, resultado.getLotes());
+        assertEquals(7L, resultado.getLeiloes());
+        assertEquals(14L, resultado.getLances());
+        assertEquals(3, progresso.size());
+        assertEquals(3L, progresso.get(0).getLeiloes());
+        assertEquals(6L, progresso.get(1).getLeiloes());
+
+        assertFalse(session.getTransaction().isActive());
+        assertEquals(1L, (long) leilaoDao.total());
+        assertEquals(3, leilaoDao.porId(aberto.getId()).getLances().size());
+        assertEquals(3L, lancesDoLicitante());
+    }
+
+    @Test
+    public void naoDeveFazerNadaSemLeiloesEncerrados() {
+        leilao("Aberto", false, 1);
+        session.getTransaction().commit();
+
+        ResultadoDoExpurgo resultado = leilaoDao.expurgaEncerrados();
+
+        assertEquals(0, resultado.getLotes());
+        assertEquals(0L, resultado.getLeiloes());
+        assertEquals(1L, lancesDoLicitante());
+    }
+
+    @Test
+    public void deveRecusarExpurgoDentroDeUmaTransacao() {
+        leilao("Encerrado", true, 1);
+
+        try {
+            leilaoDao.expurgaEncerrados();
+            fail("o expurgo confirmaria a transacao do chamador");
+        } catch (IllegalStateException esperado) {
+            // a transacao do chamador continua aberta e intacta
+        }
+
+        assertTrue(session.getTransaction().isActive());
+        session.getTransaction().rollback();
+        assertEquals(0L, lancesDoLicitante());
+    }
+
+    @Test
+    public void deveRecusarExpurgoComAlteracoesPendentes() {
+        Leilao aberto = leilao("Aberto", false, 1);
+        leilao("Encerrado", true, 1);
+        session.getTransaction().commit();
+        aberto.setNome("Renomeado fora de transacao");
+
+        try {
+            leilaoDao.expurgaEncerrados();
+            fail("o expurgo gravaria a alteracao junto com o primeiro lote");
+        } catch (IllegalStateException esperado) {
+        }
+
+        session.clear();
+        assertEquals("Aberto", leilaoDao.porId(aberto.getId()).getNome());
+        assertEquals(2L, lancesDoLicitante());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deveRecusarLoteVazio() {
+        session.getTransaction().commit();
+        leilaoDao.expurgaEncerrados(0, null);
+    }
+
+    private long lancesDoLicitante() {
+        return (Long) session.createQuery("select count(lance) from Lance lance " +
+                "where lance.usuario.id = :licitante")
+                .setParameter("licitante", licitante.getId()).uniqueResult();
+    }
+}
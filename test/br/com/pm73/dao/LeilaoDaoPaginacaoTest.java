@@ -0,0 +1,140 @@
+package br.com.pm73.dao;
+
+import br.com.pm73.dominio.Dinheiro;
+import br.com.pm73.dominio.Lance;
+import br.com.pm73.dominio.Leilao;
+import br.com.pm73.dominio.Usuario;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LeilaoDaoPaginacaoTest {
+    private Session session;
+    private UsuarioDao usuarioDao;
+    private LeilaoDao leilaoDao;
+    private Usuario mauricio;
+
+    @Before
+    public void antes() {
+        session = new CriadorDeSessao().getSession();
+        usuarioDao = new UsuarioDao(session);
+        leilaoDao = new LeilaoDao(session);
+        session.beginTransaction();
+
+        mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
+        usuarioDao.salvar(mauricio);
+    }
+
+    @After
+    public void depois() {
+        session.getTransaction().rollback();
+        session.close();
+    }
+
+    private Leilao leilaoAberto(String nome, double valor, int diasAtras) {
+        Leilao leilao = new Leilao(nome, reais(valor), mauricio, false);
+        Instant data = Instant.now().minus(diasAtras, ChronoUnit.DAYS);
+        leilao.setDataAbertura(data);
+        leilaoDao.salvar(leilao);
+        return leilao;
+    }
+
+    @Test
+    public void deveDividirNovosEmPaginasPeloOffset() {
+        leilaoAberto("Xbox", 100.0, 3);
+        leilaoAberto("Geladeira", 200.0, 2);
+        leilaoAberto("Fogao", 300.0, 1);
+
+        List<Leilao> primeira = leilaoDao.novos(0, 2);
+        List<Leilao> segunda = leilaoDao.novos(1, 2);
+
+        assertEquals(2, primeira.size());
+        assertEquals("Xbox", primeira.get(0).getNome());
+        assertEquals("Geladeira", primeira.get(1).getNome());
+        assertEquals(1, segunda.size());
+        assertEquals("Fogao", segunda.get(0).getNome());
+    }
+
+    @Test
+    public void devePercorrerNovosPeloCursor() {
+        leilaoAberto("Xbox", 100.0, 3);
+        leilaoAberto("Geladeira", 200.0, 2);
+        leilaoAberto("Fogao", 300.0, 1);
+
+        Pagina<Leilao, Instant> primeira = leilaoDao.novosAPartirDe(null, 2);
+
+        assertEquals(2, primeira.getItens().size());
+        assertTrue(primeira.temProxima());
+
+        Pagina<Leilao, Instant> segunda = leilaoDao.novosAPartirDe(primeira.getProximo(), 2);
+
+        assertEquals(1, segunda.getItens().size());
+        assertEquals("Fogao", segunda.getItens().get(0).getNome());
+        assertFalse(segunda.temProxima());
+    }
+
+    @Test
+    public void cursorDeveDesempatarPeloIdQuandoADataERepetida() {
+        Instant mesmaData = Instant.now().minus(1, ChronoUnit.DAYS);
+        for (int i = 0; i < 5; i++) {
+            Leilao leilao = new Leilao("Leilao " + i, reais(100.0), mauricio, false);
+            leilao.setDataAbertura(mesmaData);
+            leilaoDao.salvar(leilao);
+        }
+
+        int vistos = 0;
+        Cursor<Instant> cursor = null;
+        do {
+            Pagina<Leilao, Instant> pagina = leilaoDao.novosAPartirDe(cursor, 2);
+            vistos += pagina.getItens().size();
+            cursor = pagina.getProximo();
+        } while (cursor != null);
+
+        assertEquals(5, vistos);
+    }
+
+    @Test
+    public void devePaginarDisputadosPeloValorInicial() {
+        Usuario maria = new Usuario("Maria", "maria@mauricio.com.br");
+        usuarioDao.salvar(maria);
+        for (int i = 0; i < 3; i++) {
+            Leilao leilao = new Leilao("Leilao " + i, reais(500.0 + i), mauricio, false);
+            for (int j = 0; j < 4; j++) {
+                leilao.adicionaLance(new Lance(Instant.now(), maria, reais(600.0 + j), leilao));
+            }
+            leilaoDao.salvar(leilao);
+        }
+
+        Pagina<Leilao, Dinheiro> primeira = leilaoDao.disputadosEntreAPartirDe(reais(400), reais(600), null, 2);
+        Pagina<Leilao, Dinheiro> segunda = leilaoDao.disputadosEntreAPartirDe(reais(400), reais(600), primeira.getProximo(), 2);
+
+        assertEquals(reais(501.0), primeira.getProximo().getChave());
+        assertEquals(1, segunda.getItens().size());
+        assertEquals("Leilao 2", segunda.getItens().get(0).getNome());
+        assertNull(segunda.getProximo());
+    }
+
+    @Test
+    public void leiloesDoUsuarioPaginadosNaoSeRepetem() {
+        Usuario maria = new Usuario("Maria", "maria@mauricio.com.br");
+        usuarioDao.salvar(maria);
+        Leilao xbox = new Leilao("Xbox", reais(100.0), mauricio, false);
+        xbox.adicionaLance(new Lance(Instant.now(), maria, reais(110.0), xbox));
+        xbox.adicionaLance(new Lance(Instant.now(), maria, reais(120.0), xbox));
+        leilaoDao.salvar(xbox);
+
+        assertEquals(1, leilaoDao.listaLeiloesDoUsuario(maria, 0, 10).size());
+        assertEquals(1, leilaoDao.leiloesDoUsuarioAPartirDe(maria, null, 10).getItens().size());
+    }
+}
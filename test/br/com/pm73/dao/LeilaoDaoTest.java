@@ -1,19 +1,28 @@
 package br.com.pm73.dao;
 
 import br.com.pm73.dataBuilder.LeilaoBuilder;
+import br.com.pm73.dominio.Dinheiro;
 import br.com.pm73.dominio.Lance;
 import br.com.pm73.dominio.Leilao;
 import br.com.pm73.dominio.Usuario;
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.util.Calendar;
-import java.util.GregorianCalendar;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 
+import static br.com.pm73.dominio.Dinheiro.reais;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class LeilaoDaoTest {
     private Session session;
@@ -44,8 +53,8 @@ public class LeilaoDaoTest {
 
         Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
 
-        Leilao ativo = new Leilao("Geladeira", 1500.0, mauricio, false);
-        Leilao encerrado = new Leilao("Xbox", 1500.0, mauricio, false);
+        Leilao ativo = new Leilao("Geladeira", reais(1500.0), mauricio, false);
+        Leilao encerrado = new Leilao("Xbox", reais(1500.0), mauricio, false);
 
         encerrado.encerra();
 
@@ -63,8 +72,8 @@ public class LeilaoDaoTest {
 
         Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
 
-        Leilao encerrado1 = new Leilao("Geladeira", 1500.0, mauricio, false);
-        Leilao encerrado2 = new Leilao("Xbox", 1500.0, mauricio, false);
+        Leilao encerrado1 = new Leilao("Geladeira", reais(1500.0), mauricio, false);
+        Leilao encerrado2 = new Leilao("Xbox", reais(1500.0), mauricio, false);
 
         usuarioDao.salvar(mauricio);
         leilaoDao.salvar(encerrado1);
@@ -83,8 +92,8 @@ public class LeilaoDaoTest {
 
         Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
 
-        Leilao leilaoUsado = new Leilao("Geladeira", 1500.0, mauricio, true);
-        Leilao leilaoNovo = new Leilao("Xbox", 1500.0, mauricio, false);
+        Leilao leilaoUsado = new Leilao("Geladeira", reais(1500.0), mauricio, true);
+        Leilao leilaoNovo = new Leilao("Xbox", reais(1500.0), mauricio, false);
 
         usuarioDao.salvar(mauricio);
         leilaoDao.salvar(leilaoUsado);
@@ -101,16 +110,15 @@ public class LeilaoDaoTest {
 
         Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
 
-        Leilao leilaoAntigo = new Leilao("Geladeira", 1500.0, mauricio, true);
-        Leilao leilaoNovo = new Leilao("Xbox", 1500.0, mauricio, false);
+        Leilao leilaoAntigo = new Leilao("Geladeira", reais(1500.0), mauricio, true);
+        Leilao leilaoNovo = new Leilao("Xbox", reais(1500.0), mauricio, false);
 
-        leilaoAntigo.setDataAbertura( new GregorianCalendar(2013,1,28));
-        leilaoNovo.setDataAbertura( new GregorianCalendar(2020,5,8));
+        leilaoAntigo.setDataAbertura( LocalDate.of(2013, 2, 28).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        leilaoNovo.setDataAbertura( LocalDate.of(2020, 6, 8).atStartOfDay(ZoneId.systemDefault()).toInstant());
 
         //OU
-        /*Calendar dataRecente = Calendar.getInstance();
-        Calendar dataAntiga = Calendar.getInstance();
-        dataAntiga.add(Calendar.DAY_OF_MONTH, -10);*/
+        /*Instant dataRecente = Instant.now();
+        Instant dataAntiga = Instant.now().minus(10, ChronoUnit.DAYS);*/
 
         usuarioDao.salvar(mauricio);
         leilaoDao.salvar(leilaoAntigo);
@@ -127,10 +135,9 @@ public class LeilaoDaoTest {
 
         Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
 
-        Leilao criadoA7DiasAtras = new Leilao("Geladeira", 1500.0, mauricio, true);
+        Leilao criadoA7DiasAtras = new Leilao("Geladeira", reais(1500.0), mauricio, true);
 
-        Calendar seteDiasAtras = Calendar.getInstance();
-        seteDiasAtras.add(Calendar.DAY_OF_MONTH, -7);
+        Instant seteDiasAtras = Instant.now().minus(7, ChronoUnit.DAYS);
 
         criadoA7DiasAtras.setDataAbertura(seteDiasAtras);
 
@@ -145,22 +152,19 @@ public class LeilaoDaoTest {
 
     @Test
     public void deveTrazerLeiloesNaoEncerradosNoPeriodo(){
-        Calendar comecoDoIntervalo = Calendar.getInstance();
-        comecoDoIntervalo.add(Calendar.DAY_OF_MONTH, - 10);
+        Instant comecoDoIntervalo = Instant.now().minus(10, ChronoUnit.DAYS);
 
-        Calendar fimDoIntervalo = Calendar.getInstance();
+        Instant fimDoIntervalo = Instant.now();
 
         Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
 
-        Leilao leilao1 = new Leilao("Xbox", 700.0, mauricio, false);
-        Calendar dataLeilao1 = Calendar.getInstance();
-        dataLeilao1.add(Calendar.DAY_OF_MONTH, - 2);
+        Leilao leilao1 = new Leilao("Xbox", reais(700.0), mauricio, false);
+        Instant dataLeilao1 = Instant.now().minus(2, ChronoUnit.DAYS);
 
         leilao1.setDataAbertura(dataLeilao1);
 
-        Leilao leilao2 = new Leilao("Geladeira", 900.0, mauricio, false);
-        Calendar dataLeilao2 = Calendar.getInstance();
-        dataLeilao2.add(Calendar.DAY_OF_MONTH, - 20);
+        Leilao leilao2 = new Leilao("Geladeira", reais(900.0), mauricio, false);
+        Instant dataLeilao2 = Instant.now().minus(20, ChronoUnit.DAYS);
 
         leilao2.setDataAbertura(dataLeilao2);
 
@@ -176,17 +180,15 @@ public class LeilaoDaoTest {
 
     @Test
     public void naoDeveTrazerLeiloesEncerradoNoPeriodo(){
-        Calendar comecoDoIntervalo = Calendar.getInstance();
-        comecoDoIntervalo.add(Calendar.DAY_OF_MONTH, - 10);
+        Instant comecoDoIntervalo = Instant.now().minus(10, ChronoUnit.DAYS);
 
-        Calendar fimDoIntervalo = Calendar.getInstance();
+        Instant fimDoIntervalo = Instant.now();
 
         Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
 
-        Calendar dataLeilao1 = Calendar.getInstance();
-        dataLeilao1.add(Calendar.DAY_OF_MONTH, - 2);
+        Instant dataLeilao1 = Instant.now().minus(2, ChronoUnit.DAYS);
 
-        Leilao leilao1 = new Leilao("Xbox", 700.0, mauricio, false);
+        Leilao leilao1 = new Leilao("Xbox", reais(700.0), mauricio, false);
         leilao1.setDataAbertura(dataLeilao1);
         leilao1.encerra();
 
@@ -201,35 +203,35 @@ public class LeilaoDaoTest {
     @Test
     public void deveTrazerLeiloesEncerradosNoDisputadosEntre() {
 
-        Calendar dataLance = Calendar.getInstance();
+        Instant dataLance = Instant.now();
 
-        Calendar fimDoIntervalo = Calendar.getInstance();
+        Instant fimDoIntervalo = Instant.now();
 
         Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
         Usuario maria = new Usuario("Maria", "maria@mauricio.com.br");
 
-        Calendar dataLeilao1 = Calendar.getInstance();
+        Instant dataLeilao1 = Instant.now();
 
-        Leilao leilao1 = new Leilao("Xbox", 500.0, mauricio, false);
+        Leilao leilao1 = new Leilao("Xbox", reais(500.0), mauricio, false);
         leilao1.setDataAbertura(dataLeilao1);
-        leilao1.adicionaLance(new Lance(dataLance, maria, 510, leilao1));
-        leilao1.adicionaLance(new Lance(dataLance, mauricio, 520, leilao1));
-        leilao1.adicionaLance(new Lance(dataLance, maria, 530, leilao1));
-        leilao1.adicionaLance(new Lance(dataLance, mauricio, 540, leilao1));
+        leilao1.adicionaLance(new Lance(dataLance, maria, reais(510), leilao1));
+        leilao1.adicionaLance(new Lance(dataLance, mauricio, reais(520), leilao1));
+        leilao1.adicionaLance(new Lance(dataLance, maria, reais(530), leilao1));
+        leilao1.adicionaLance(new Lance(dataLance, mauricio, reais(540), leilao1));
 
-        Leilao leilao2 = new Leilao("Geladeira", 700.0, mauricio, false);
+        Leilao leilao2 = new Leilao("Geladeira", reais(700.0), mauricio, false);
         leilao2.setDataAbertura(dataLeilao1);
-        leilao2.adicionaLance(new Lance(dataLance, maria, 710, leilao1));
-        leilao2.adicionaLance(new Lance(dataLance, mauricio, 720, leilao1));
-        leilao2.adicionaLance(new Lance(dataLance, maria, 730, leilao1));
-        leilao2.adicionaLance(new Lance(dataLance, mauricio, 740, leilao1));
+        leilao2.adicionaLance(new Lance(dataLance, maria, reais(710), leilao1));
+        leilao2.adicionaLance(new Lance(dataLance, mauricio, reais(720), leilao1));
+        leilao2.adicionaLance(new Lance(dataLance, maria, reais(730), leilao1));
+        leilao2.adicionaLance(new Lance(dataLance, mauricio, reais(740), leilao1));
 
         usuarioDao.salvar(mauricio);
         usuarioDao.salvar(maria);
         leilaoDao.salvar(leilao1);
         leilaoDao.salvar(leilao2);
 
-        List<Leilao> leiloes = leilaoDao.disputadosEntre(400, 600);
+        List<Leilao> leiloes = leilaoDao.disputadosEntre(reais(400), reais(600));
 
         assertEquals(1, leiloes.size());
         assertEquals("Xbox", leiloes.get(0).getNome());
@@ -238,28 +240,28 @@ public class LeilaoDaoTest {
     @Test
     public void deveTrazerLeiloesNoDisputadosEntreQueEstejaEncerrado() {
 
-        Calendar dataLance = Calendar.getInstance();
+        Instant dataLance = Instant.now();
 
-        Calendar fimDoIntervalo = Calendar.getInstance();
+        Instant fimDoIntervalo = Instant.now();
 
         Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
         Usuario maria = new Usuario("Maria", "maria@mauricio.com.br");
 
-        Calendar dataLeilao1 = Calendar.getInstance();
+        Instant dataLeilao1 = Instant.now();
 
-        Leilao leilao1 = new Leilao("Xbox", 500.0, mauricio, false);
+        Leilao leilao1 = new Leilao("Xbox", reais(500.0), mauricio, false);
         leilao1.setDataAbertura(dataLeilao1);
-        leilao1.adicionaLance(new Lance(dataLance, maria, 510, leilao1));
-        leilao1.adicionaLance(new Lance(dataLance, mauricio, 520, leilao1));
-        leilao1.adicionaLance(new Lance(dataLance, maria, 530, leilao1));
-        leilao1.adicionaLance(new Lance(dataLance, mauricio, 540, leilao1));
+        leilao1.adicionaLance(new Lance(dataLance, maria, reais(510), leilao1));
+        leilao1.adicionaLance(new Lance(dataLance, mauricio, reais(520), leilao1));
+        leilao1.adicionaLance(new Lance(dataLance, maria, reais(530), leilao1));
+        leilao1.adicionaLance(new Lance(dataLance, mauricio, reais(540), leilao1));
 
-        Leilao leilao2 = new Leilao("Geladeira", 700.0, mauricio, false);
+        Leilao leilao2 = new Leilao("Geladeira", reais(700.0), mauricio, false);
         leilao2.setDataAbertura(dataLeilao1);
-        leilao2.adicionaLance(new Lance(dataLance, maria, 710, leilao1));
-        leilao2.adicionaLance(new Lance(dataLance, mauricio, 720, leilao1));
-        leilao2.adicionaLance(new Lance(dataLance, maria, 730, leilao1));
-        leilao2.adicionaLance(new Lance(dataLance, mauricio, 740, leilao1));
+        leilao2.adicionaLance(new Lance(dataLance, maria, reais(710), leilao1));
+        leilao2.adicionaLance(new Lance(dataLance, mauricio, reais(720), leilao1));
+        leilao2.adicionaLance(new Lance(dataLance, maria, reais(730), leilao1));
+        leilao2.adicionaLance(new Lance(dataLance, mauricio, reais(740), leilao1));
         leilao2.encerra();
 
         usuarioDao.salvar(mauricio);
@@ -267,7 +269,7 @@ public class LeilaoDaoTest {
         leilaoDao.salvar(leilao1);
         leilaoDao.salvar(leilao2);
 
-        List<Leilao> leiloes = leilaoDao.disputadosEntre(400, 800);
+        List<Leilao> leiloes = leilaoDao.disputadosEntre(reais(400), reais(800));
 
         assertEquals(1, leiloes.size());
         assertEquals("Xbox", leiloes.get(0).getNome());
@@ -276,20 +278,20 @@ public class LeilaoDaoTest {
     @Test
     public void deveTrazerLeiloesNoListaLeiloesDoUsuario() {
 
-        Calendar dataLance = Calendar.getInstance();
+        Instant dataLance = Instant.now();
 
         Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
         Usuario maria = new Usuario("Maria", "maria@mauricio.com.br");
 
-        Leilao leilao1 = new Leilao("Xbox", 500.0, mauricio, false);
-        leilao1.adicionaLance(new Lance(dataLance, maria, 510, leilao1));
-        leilao1.adicionaLance(new Lance(dataLance, mauricio, 520, leilao1));
+        Leilao leilao1 = new Leilao("Xbox", reais(500.0), mauricio, false);
+        leilao1.adicionaLance(new Lance(dataLance, maria, reais(510), leilao1));
+        leilao1.adicionaLance(new Lance(dataLance, mauricio, reais(520), leilao1));
 
-        Leilao leilao2 = new Leilao("Geladeira", 700.0, maria, false);
-        leilao2.adicionaLance(new Lance(dataLance, mauricio, 720, leilao1));
+        Leilao leilao2 = new Leilao("Geladeira", reais(700.0), maria, false);
+        leilao2.adicionaLance(new Lance(dataLance, mauricio, reais(720), leilao1));
 
-        Leilao leilao3 = new Leilao("Fogão", 800.0, mauricio, false);
-        leilao3.adicionaLance(new Lance(dataLance, maria, 710, leilao1));
+        Leilao leilao3 = new Leilao("Fogão", reais(800.0), mauricio, false);
+        leilao3.adicionaLance(new Lance(dataLance, maria, reais(710), leilao1));
 
         usuarioDao.salvar(mauricio);
         usuarioDao.salvar(maria);
@@ -317,14 +319,14 @@ public class LeilaoDaoTest {
         Usuario comprador2 = new Usuario("Guilherme", "g@g.com");
         Leilao leilao = new LeilaoBuilder()
                 .comDono(dono)
-                .comValor(50.0)
-                .comLance(Calendar.getInstance(), comprador, 100.0)
-                .comLance(Calendar.getInstance(), comprador2, 200.0)
+                .comValor(reais(50.0))
+                .comLance(Instant.now(), comprador, reais(100.0))
+                .comLance(Instant.now(), comprador2, reais(200.0))
                 .constroi();
         Leilao leilao2 = new LeilaoBuilder()
                 .comDono(dono)
-                .comValor(250.0)
-                .comLance(Calendar.getInstance(), comprador2, 100.0)
+                .comValor(reais(250.0))
+                .comLance(Instant.now(), comprador2, reais(100.0))
                 .constroi();
         usuarioDao.salvar(dono);
         usuarioDao.salvar(comprador);
@@ -343,8 +345,8 @@ public class LeilaoDaoTest {
         Usuario comprador = new Usuario("Victor", "v@v.com");
         Leilao leilao = new LeilaoBuilder()
                 .comDono(dono)
-                .comLance(Calendar.getInstance(), comprador, 100.0)
-                .comLance(Calendar.getInstance(), comprador, 200.0)
+                .comLance(Instant.now(), comprador, reais(100.0))
+                .comLance(Instant.now(), comprador, reais(200.0))
                 .constroi();
         usuarioDao.salvar(dono);
         usuarioDao.salvar(comprador);
@@ -355,4 +357,203 @@ public class LeilaoDaoTest {
         assertEquals(leilao, leiloes.get(0));
     }
 
+    @Test
+    public void deveSalvarTodosOsLeiloesEmLote() {
+        Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
+        Usuario maria = new Usuario("Maria", "maria@mauricio.com.br");
+        usuarioDao.salvar(mauricio);
+        usuarioDao.salvar(maria);
+
+        List<Leilao> leiloes = new ArrayList<Leilao>();
+        for (int i = 0; i < 120; i++) {
+            Leilao leilao = new Leilao("Leilao " + i, reais(100.0 + i), mauricio, false);
+            leilao.adicionaLance(new Lance(Instant.now(), maria, reais(200.0 + i), leilao));
+            leilao.adicionaLance(new Lance(Instant.now(), maria, reais(300.0 + i), leilao));
+            leiloes.add(leilao);
+        }
+
+        ResultadoDaImportacao resultado = leilaoDao.salvarTodos(leiloes);
+
+        assertEquals(120, resultado.getLeiloes());
+        assertEquals(360L, resultado.getLinhas());
+        assertEquals(120L, (long) leilaoDao.total());
+        assertEquals(120, leilaoDao.listaLeiloesDoUsuario(maria).size());
+    }
+
+    @Test
+    public void deveProcessarLeiloesAntigosEmFluxo() {
+        Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
+        usuarioDao.salvar(mauricio);
+
+        for (int i = 0; i < 25; i++) {
+            Leilao antigo = new Leilao("Antigo " + i, reais(100.0), mauricio, false);
+            Instant data = Instant.now().minus(10, ChronoUnit.DAYS);
+            antigo.setDataAbertura(data);
+            leilaoDao.salvar(antigo);
+        }
+        leilaoDao.salvar(new Leilao("Recente", reais(100.0), mauricio, false));
+
+        final List<String> nomes = new ArrayList<String>();
+        long processados = leilaoDao.processaAntigos(10, new Processador<Leilao>() {
+            public void processa(Leilao leilao) {
+                nomes.add(leilao.getNome());
+            }
+        });
+
+        assertEquals(25, processados);
+        assertEquals(25, nomes.size());
+        assertFalse(nomes.contains("Recente"));
+        assertEquals(0, session.getStatistics().getEntityCount());
+    }
+
+    @Test
+    public void deveProcessarLancesDoUsuarioEmFluxo() {
+        Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
+        Usuario maria = new Usuario("Maria", "maria@mauricio.com.br");
+        usuarioDao.salvar(mauricio);
+        usuarioDao.salvar(maria);
+
+        Leilao leilao = new Leilao("Xbox", reais(100.0), mauricio, false);
+        leilao.adicionaLance(new Lance(Instant.now(), maria, reais(110.0), leilao));
+        leilao.adicionaLance(new Lance(Instant.now(), mauricio, reais(120.0), leilao));
+        leilao.adicionaLance(new Lance(Instant.now(), maria, reais(130.0), leilao));
+        leilaoDao.salvar(leilao);
+
+        final long[] soma = new long[1];
+        long processados = leilaoDao.processaLancesDoUsuario(maria, new Processador<Lance>() {
+            public void processa(Lance lance) {
+                soma[0] += lance.getValorEmCentavos();
+            }
+        });
+
+        assertEquals(2, processados);
+        assertEquals(reais(240.0).getCentavos(), soma[0]);
+    }
+
+    @Test
+    public void deveRecalcularQuantidadeDeLancesAPartirDaTabelaDeLances() {
+        Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
+        Usuario maria = new Usuario("Maria", "maria@mauricio.com.br");
+        usuarioDao.salvar(mauricio);
+        usuarioDao.salvar(maria);
+
+        Leilao leilao = new Leilao("Xbox", reais(500.0), mauricio, false);
+        for (int i = 0; i < 4; i++) {
+            leilao.adicionaLance(new Lance(Instant.now(), maria, reais(510.0 + i), leilao));
+        }
+        Leilao semLances = new Leilao("Geladeira", reais(500.0), mauricio, false);
+        leilaoDao.salvar(leilao);
+        leilaoDao.salvar(semLances);
+        session.flush();
+
+        session.createQuery("update Leilao l set l.quantidadeDeLances = 0").executeUpdate();
+        session.clear();
+        assertEquals(0, leilaoDao.disputadosEntre(reais(400), reais(600)).size());
+
+        leilaoDao.recalculaQuantidadeDeLances();
+        session.clear();
+
+        assertEquals(4, leilaoDao.porId(leilao.getId()).getQuantidadeDeLances());
+        assertEquals(0, leilaoDao.porId(semLances.getId()).getQuantidadeDeLances());
+        assertEquals(1, leilaoDao.disputadosEntre(reais(400), reais(600)).size());
+        assertEquals(reais(513.0), leilaoDao.porId(leilao.getId()).getMaiorLance());
+        assertEquals(maria.getId(), leilaoDao.porId(leilao.getId()).getVencedor().getId());
+        assertNull(leilaoDao.porId(semLances.getId()).getVencedor());
+    }
+
+    @Test
+    public void deveManterMaiorLanceEVencedorSemCarregarOsLances() {
+        Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
+        Usuario maria = new Usuario("Maria", "maria@mauricio.com.br");
+        Usuario jose = new Usuario("Jose", "jose@mauricio.com.br");
+        usuarioDao.salvar(mauricio);
+        usuarioDao.salvar(maria);
+        usuarioDao.salvar(jose);
+
+        Leilao xbox = new Leilao("Xbox", reais(500.0), mauricio, false);
+        xbox.adicionaLance(new Lance(Instant.now(), maria, reais(510.0), xbox));
+        xbox.adicionaLance(new Lance(Instant.now(), jose, reais(530.0), xbox));
+        xbox.adicionaLance(new Lance(Instant.now(), maria, reais(520.0), xbox));
+        xbox.adicionaLance(new Lance(Instant.now(), maria, reais(530.0), xbox));
+        Leilao geladeira = new Leilao("Geladeira", reais(700.0), mauricio, false);
+        geladeira.adicionaLance(new Lance(Instant.now(), maria, reais(800.0), geladeira));
+        Leilao semLances = new Leilao("Fogao", reais(300.0), mauricio, false);
+        leilaoDao.salvar(xbox);
+        leilaoDao.salvar(geladeira);
+        leilaoDao.salvar(semLances);
+        session.flush();
+        session.clear();
+
+        Leilao carregado = leilaoDao.porId(xbox.getId());
+        assertEquals(reais(530.0), carregado.getMaiorLance());
+        assertEquals(jose.getId(), carregado.getVencedor().getId());
+        assertFalse(Hibernate.isInitialized(session.getSessionFactory().getClassMetadata(Leilao.class)
+                .getPropertyValue(carregado, "lances")));
+
+        List<Leilao> maisValorizados = leilaoDao.maisValorizados(10);
+        assertEquals(2, maisValorizados.size());
+        assertEquals("Geladeira", maisValorizados.get(0).getNome());
+        assertEquals("Xbox", maisValorizados.get(1).getNome());
+
+        assertEquals(1, leilaoDao.vencendoPor(maria).size());
+        assertEquals("Geladeira", leilaoDao.vencendoPor(maria).get(0).getNome());
+        assertEquals(Dinheiro.ZERO, leilaoDao.porId(semLances.getId()).getMaiorLance());
+    }
+
+    @Test
+    public void resumoDosLeiloesDoUsuarioNaoTemRepeticaoNemEntidades() {
+        Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
+        Usuario maria = new Usuario("Maria", "maria@mauricio.com.br");
+        usuarioDao.salvar(mauricio);
+        usuarioDao.salvar(maria);
+
+        Leilao xbox = new Leilao("Xbox", reais(500.0), mauricio, false);
+        xbox.adicionaLance(new Lance(Instant.now(), maria, reais(510.0), xbox));
+        xbox.adicionaLance(new Lance(Instant.now(), maria, reais(520.0), xbox));
+        xbox.adicionaLance(new Lance(Instant.now(), maria, reais(530.0), xbox));
+        Leilao geladeira = new Leilao("Geladeira", reais(700.0), mauricio, false);
+        geladeira.adicionaLance(new Lance(Instant.now(), maria, reais(710.0), geladeira));
+        geladeira.encerra();
+        leilaoDao.salvar(xbox);
+        leilaoDao.salvar(geladeira);
+        session.flush();
+        session.clear();
+
+        List<LeilaoResumido> resumo = leilaoDao.resumoDosLeiloesDoUsuario(maria);
+
+        assertEquals(2, resumo.size());
+        assertEquals("Xbox", resumo.get(0).getNome());
+        assertEquals(reais(500.0), resumo.get(0).getValorInicial());
+        assertFalse(resumo.get(0).isEncerrado());
+        assertEquals("Geladeira", resumo.get(1).getNome());
+        assertTrue(resumo.get(1).isEncerrado());
+        assertEquals(0, session.getStatistics().getEntityCount());
+        assertEquals(2, leilaoDao.listaLeiloesDoUsuario(maria).size());
+    }
+
+    @Test
+    public void deletaEncerradosDeveApagarTambemOsLances() {
+        Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
+        Usuario maria = new Usuario("Maria", "maria@mauricio.com.br");
+        usuarioDao.salvar(mauricio);
+        usuarioDao.salvar(maria);
+
+        Leilao encerrado = new Leilao("Geladeira", reais(700.0), mauricio, false);
+        encerrado.adicionaLance(new Lance(Instant.now(), maria, reais(710.0), encerrado));
+        encerrado.encerra();
+        Leilao aberto = new Leilao("Xbox", reais(500.0), mauricio, false);
+        aberto.adicionaLance(new Lance(Instant.now(), maria, reais(510.0), aberto));
+        leilaoDao.salvar(encerrado);
+        leilaoDao.salvar(aberto);
+        session.flush();
+
+        leilaoDao.deletaEncerrados();
+        session.clear();
+
+        assertNull(leilaoDao.porId(encerrado.getId()));
+        assertEquals(1, leilaoDao.listaLeiloesDoUsuario(maria).size());
+        assertEquals(1L, session.createQuery("select count(lance) from Lance lance " +
+                "where lance.usuario = :maria").setParameter("maria", maria).uniqueResult());
+    }
+
 }
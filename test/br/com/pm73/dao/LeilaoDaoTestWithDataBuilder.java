@@ -7,8 +7,8 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.util.Calendar;
-import java.util.GregorianCalendar;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
@@ -145,8 +145,7 @@ public class LeilaoDaoTestWithDataBuilder {
                 .comDono(mauricio)
                 .constroi();
 
-        Calendar dataAntiga = Calendar.getInstance();
-        dataAntiga.add(Calendar.DAY_OF_MONTH, -7);
+        Instant dataAntiga = Instant.now().minus(7, ChronoUnit.DAYS);
 
         noLimite.setDataAbertura(dataAntiga);
 
@@ -162,9 +161,8 @@ public class LeilaoDaoTestWithDataBuilder {
     public void deveTrazerLeiloesNaoEncerradosNoPeriodo() {
 
         // criando as datas
-        Calendar comecoDoIntervalo = Calendar.getInstance();
-        comecoDoIntervalo.add(Calendar.DAY_OF_MONTH, -10);
-        Calendar fimDoIntervalo = Calendar.getInstance();
+        Instant comecoDoIntervalo = Instant.now().minus(10, ChronoUnit.DAYS);
+        Instant fimDoIntervalo = Instant.now();
 
         Usuario mauricio = new Usuario("Mauricio Aniche",
                 "mauricio@aniche.com.br");
@@ -200,11 +198,9 @@ public class LeilaoDaoTestWithDataBuilder {
     public void naoDeveTrazerLeiloesEncerradosNoPeriodo() {
 
         // criando as datas
-        Calendar comecoDoIntervalo = Calendar.getInstance();
-        comecoDoIntervalo.add(Calendar.DAY_OF_MONTH, -10);
-        Calendar fimDoIntervalo = Calendar.getInstance();
-        Calendar dataDoLeilao1 = Calendar.getInstance();
-        dataDoLeilao1.add(Calendar.DAY_OF_MONTH, -2);
+        Instant comecoDoIntervalo = Instant.now().minus(10, ChronoUnit.DAYS);
+        Instant fimDoIntervalo = Instant.now();
+        Instant dataDoLeilao1 = Instant.now().minus(2, ChronoUnit.DAYS);
 
         Usuario mauricio = new Usuario("Mauricio Aniche",
                 "mauricio@aniche.com.br");
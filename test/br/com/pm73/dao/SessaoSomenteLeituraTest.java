@@ -0,0 +1,59 @@
+package br.com.pm73.dao;
+
+import br.com.pm73.dominio.Leilao;
+import br.com.pm73.dominio.Usuario;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SessaoSomenteLeituraTest {
+    private Session session;
+    private LeilaoDao leilaoDao;
+    private Leilao xbox;
+
+    @Before
+    public void antes() {
+        session = new CriadorDeSessao().getSessionSomenteLeitura();
+        leilaoDao = new LeilaoDao(session);
+        session.beginTransaction();
+
+        Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
+        new UsuarioDao(session).salvar(mauricio);
+        xbox = new Leilao("Xbox", reais(500.0), mauricio, false);
+        leilaoDao.salvar(xbox);
+        session.flush();
+        session.clear();
+    }
+
+    @After
+    public void depois() {
+        session.getTransaction().rollback();
+        session.close();
+    }
+
+    @Test
+    public void entidadesCarregadasSaoSomenteLeitura() {
+        List<Leilao> novos = leilaoDao.novos();
+
+        assertEquals(1, novos.size());
+        assertTrue(session.isReadOnly(novos.get(0)));
+    }
+
+    @Test
+    public void alteracoesNaoVaoParaOBanco() {
+        Leilao carregado = leilaoDao.porId(xbox.getId());
+        carregado.setNome("Geladeira");
+        session.flush();
+
+        Object nome = session.createSQLQuery("select nome from Leilao where id = :id")
+                .setParameter("id", xbox.getId()).uniqueResult();
+        assertEquals("Xbox", nome);
+    }
+}
@@ -0,0 +1,126 @@
+package br.com.pm73.dao;
+
+import br.com.pm73.dominio.Leilao;
+import br.com.pm73.dominio.Usuario;
+import br.com.pm73.infra.EstatisticasDoPool;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Transacoes confirma de verdade, entao os dados gravados aqui sao apagados
+ * no @After.
+ */
+public class TransacoesTest {
+
+    private Transacoes transacoes;
+
+    @Before
+    public void antes() {
+        transacoes = new Transacoes();
+        CriadorDeSessao.inicia();
+    }
+
+    @After
+    public void depois() {
+        Session session = new CriadorDeSessao().getSession();
+        session.beginTransaction();
+        session.createQuery("delete from Leilao l where l.dono.id in " +
+                "(select u.id from Usuario u where u.email like '%@transacoes.com.br')").executeUpdate();
+        session.createQuery("delete from Usuario u where u.email like '%@transacoes.com.br'").executeUpdate();
+        session.getTransaction().commit();
+        session.close();
+    }
+
+    @Test
+    public void variasOperacoesUsamUmaUnicaConexao() {
+        long emprestimos = pool().getEmprestimos();
+
+        final Usuario dono = new Usuario("Mauricio", "mauricio@transacoes.com.br");
+        Leilao xbox = transacoes.emTransacao(new Trabalho<Leilao>() {
+            public Leilao executa(UnidadeDeTrabalho unidade) {
+                unidade.usuarios().salvar(dono);
+                Leilao leilao = new Leilao("Xbox", reais(100.0), dono, false);
+                unidade.leiloes().salvar(leilao);
+                unidade.leiloes().renomeia(leilao, "Xbox One");
+                return leilao;
+            }
+        });
+
+        assertEquals(1, pool().getEmprestimos() - emprestimos);
+        assertEquals(0, pool().getEmUso());
+        assertEquals("Xbox One", leilao(xbox.getId()).getNome());
+    }
+
+    @Test
+    public void excecaoDesfazTudoEDevolveAConexao() {
+        final Usuario dono = new Usuario("Mauricio", "mauricio@transacoes.com.br");
+        try {
+            transacoes.emTransacao(new Trabalho<Void>() {
+                public Void executa(UnidadeDeTrabalho unidade) {
+                    unidade.usuarios().salvar(dono);
+                    unidade.getSession().flush();
+                    throw new IllegalStateException("falhou no meio");
+                }
+            });
+            fail("a excecao do trabalho deveria chegar a quem chamou");
+        } catch (IllegalStateException esperado) {
+        }
+
+        assertEquals(0, pool().getEmUso());
+        assertNull(transacoes.somenteLeitura(new Trabalho<Usuario>() {
+            public Usuario executa(UnidadeDeTrabalho unidade) {
+                return unidade.usuarios().porNomeEEmail("Mauricio", "mauricio@transacoes.com.br");
+            }
+        }));
+    }
+
+    @Test
+    public void somenteLeituraRecusaEscritasNoBanco() {
+        try {
+            transacoes.somenteLeitura(new Trabalho<Integer>() {
+                public Integer executa(UnidadeDeTrabalho unidade) {
+                    return unidade.getSession()
+                            .createSQLQuery("insert into Usuario (id, nome, email) " +
+                                    "values (-1, 'Intruso', 'intruso@transacoes.com.br')")
+                            .executeUpdate();
+                }
+            });
+            fail("o banco deveria recusar a escrita");
+        } catch (HibernateException esperado) {
+        }
+
+        // a proxima transacao na mesma conexao volta a poder escrever
+        final Usuario dono = new Usuario("Maria", "maria@transacoes.com.br");
+        transacoes.emTransacao(new Trabalho<Void>() {
+            public Void executa(UnidadeDeTrabalho unidade) {
+                unidade.usuarios().salvar(dono);
+                return null;
+            }
+        });
+        assertEquals("Maria", transacoes.somenteLeitura(new Trabalho<String>() {
+            public String executa(UnidadeDeTrabalho unidade) {
+                return unidade.usuarios().porNomeEEmail("Maria", "maria@transacoes.com.br").getNome();
+            }
+        }));
+    }
+
+    private Leilao leilao(final int id) {
+        return transacoes.somenteLeitura(new Trabalho<Leilao>() {
+            public Leilao executa(UnidadeDeTrabalho unidade) {
+                return unidade.leiloes().porId(id);
+            }
+        });
+    }
+
+    private EstatisticasDoPool pool() {
+        return CriadorDeSessao.getEstatisticasDoPool();
+    }
+}
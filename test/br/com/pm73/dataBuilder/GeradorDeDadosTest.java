@@ -0,0 +1,178 @@
+package br.com.pm73.dataBuilder;
+
+import br.com.pm73.dao.CriadorDeSessao;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * O gerador confirma cada bloco, entao o @After apaga tudo o que ele gravou
+ * e o @AfterClass garante que a limpeza chegue ao arquivo do banco.
+ */
+public class GeradorDeDadosTest {
+
+    private static final Instant REFERENCIA = Instant.parse("2024-01-01T00:00:00Z");
+
+    @BeforeClass
+    public static void antesDeTodos() {
+        // o que uma execucao interrompida possa ter deixado
+        apagaGerados();
+    }
+
+    @After
+    public void depois() {
+        apagaGerados();
+    }
+
+    @AfterClass
+    public static void depoisDeTodos() {
+        apagaGerados();
+        // o SHUTDOWN do encerra grava a limpeza no caelum.db antes das proximas classes
+        CriadorDeSessao.encerra();
+    }
+
+    @Test
+    public void deveRecusarParametrosInvalidosAntesDeGerar() {
+        final GeradorDeDados gerador = new GeradorDeDados(1);
+        List<Runnable> invalidos = Arrays.<Runnable>asList(
+                new Runnable() { public void run() { gerador.comLeiloes(-1); } },
+                new Runnable() { public void run() { gerador.comLancesPorLeilao(-1); } },
+                new Runnable() { public void run() { gerador.comLancesPorLeilao(Integer.MAX_VALUE); } },
+                new Runnable() { public void run() { gerador.comProporcaoDeUsados(1.5); } },
+                new Runnable() { public void run() { gerador.comProporcaoDeUsados(Double.NaN); } },
+                new Runnable() { public void run() { gerador.comProporcaoDeEncerrados(-0.1); } },
+                new Runnable() { public void run() { gerador.abertosNosDiasAntesDe(-1, REFERENCIA); } },
+                new Runnable() { public void run() { gerador.abertosNosDiasAntesDe(30, null); } });
+
+        for (int i = 0; i < invalidos.size(); i++) {
+            try {
+                invalidos.get(i).run();
+                fail("o parametro " + i + " deveria ser recusado");
+            } catch (IllegalArgumentException esperado) {
+            }
+        }
+    }
+
+    @Test
+    public void deveGravarAsQuantidadesPedidas() {
+        ResultadoDaGeracao resultado = gerador(7, 3).gera();
+
+        List<Object> totais = totais();
+        assertEquals(200L, totais.get(0));
+        assertEquals(12000L, totais.get(1));
+        assertEquals(resultado.getLances(), totais.get(6));
+        assertEquals(200 + 12000 + resultado.getLances(), resultado.getLinhas());
+        assertTrue(resultado.getLinhasPorSegundo() > 0);
+    }
+
+    @Test
+    public void mesmaSementeGeraOsMesmosDadosEmQualquerNumeroDeThreads() {
+        gerador(7, 1).gera();
+        List<Object> sequencial = totais();
+        apagaGerados();
+
+        gerador(7, 4).gera();
+        List<Object> paralelo = totais();
+
+        assertEquals(sequencial, paralelo);
+    }
+
+    @Test
+    public void deveRespeitarAsFaixasEProporcoes() {
+        new GeradorDeDados(7)
+                .comUsuarios(100)
+                .comLeiloes(2000)
+                .comValoresEntre(reais(50), reais(500))
+                .abertosNosDiasAntesDe(30, REFERENCIA)
+                .comProporcaoDeUsados(0)
+                .comProporcaoDeEncerrados(1)
+                .comLancesPorLeilao(0)
+                .gera();
+
+        Object[] faixas = (Object[]) consulta(
+                "select min(l.valorInicial), max(l.valorInicial), min(l.dataAbertura), max(l.dataAbertura), " +
+                "sum(case when l.usado = true then 1 else 0 end), sum(case when l.encerrado = true then 1 else 0 end) " +
+                "from Leilao l where l.dono.email like '%.7@gerador.pm73.com.br'");
+
+        assertTrue((Long) faixas[0] >= reais(50).getCentavos());
+        assertTrue((Long) faixas[1] <= reais(500).getCentavos());
+        assertTrue((Long) faixas[2] >= REFERENCIA.minusSeconds(30 * 86400).toEpochMilli());
+        assertTrue((Long) faixas[3] <= REFERENCIA.toEpochMilli());
+        assertEquals(0L, faixas[4]);
+        assertEquals(2000L, faixas[5]);
+    }
+
+    @Test
+    public void licitantesConcentradosDaoAMaiorParteDosLances() {
+        new GeradorDeDados(7)
+                .comUsuarios(1000)
+                .comLeiloes(2000)
+                .comConcentracaoDosLicitantes(4)
+                .gera();
+
+        long lances = (Long) consulta(
+                "select count(lance) from Lance lance where lance.usuario.email like '%.7@gerador.pm73.com.br'");
+        long dosPrimeiros = (Long) consulta(
+                "select count(lance) from Lance lance where lance.usuario.email like 'usuario__.7@gerador.pm73.com.br' " +
+                "or lance.usuario.email like 'usuario_.7@gerador.pm73.com.br'");
+
+        // os 100 primeiros de 1000 usuarios
+        assertTrue(dosPrimeiros + " de " + lances, dosPrimeiros > lances / 2);
+    }
+
+    private GeradorDeDados gerador(long semente, int threads) {
+        return new GeradorDeDados(semente)
+                .emThreads(threads)
+                .comUsuarios(200)
+                .comLeiloes(12000)
+                .comLancesPorLeilao(3)
+                .abertosNosDiasAntesDe(365, REFERENCIA);
+    }
+
+    // usuarios; leiloes e suas somas; lances e suas somas: so batem se os dados forem os mesmos
+    private List<Object> totais() {
+        List<Object> totais = new ArrayList<Object>();
+        totais.add(consulta("select count(u) from Usuario u where u.email like '%@gerador.pm73.com.br'"));
+        totais.addAll(Arrays.asList((Object[]) consulta(
+                "select count(l), sum(l.valorInicial), sum(l.dataAbertura), sum(l.maiorLance), " +
+                "sum(case when l.encerrado = true then 1 else 0 end) " +
+                "from Leilao l where l.dono.email like '%@gerador.pm73.com.br'")));
+        totais.addAll(Arrays.asList((Object[]) consulta(
+                "select count(lance), sum(lance.valor), sum(lance.data) from Lance lance " +
+                "where lance.leilao.dono.email like '%@gerador.pm73.com.br'")));
+        return totais;
+    }
+
+    private Object consulta(String hql) {
+        Session session = new CriadorDeSessao().getSession();
+        try {
+            return session.createQuery(hql).uniqueResult();
+        } finally {
+            session.close();
+        }
+    }
+
+    private static void apagaGerados() {
+        Session session = new CriadorDeSessao().getSession();
+        session.beginTransaction();
+        session.createQuery("delete from Lance lance where lance.leilao.id in " +
+                "(select l.id from Leilao l where l.dono.email like '%@gerador.pm73.com.br')").executeUpdate();
+        session.createQuery("delete from Leilao l where l.dono.id in " +
+                "(select u.id from Usuario u where u.email like '%@gerador.pm73.com.br')").executeUpdate();
+        session.createQuery("delete from Usuario u where u.email like '%@gerador.pm73.com.br'").executeUpdate();
+        session.getTransaction().commit();
+        session.close();
+    }
+}
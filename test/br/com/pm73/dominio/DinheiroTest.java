@@ -0,0 +1,43 @@
+package br.com.pm73.dominio;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DinheiroTest {
+
+    @Test
+    public void deveGuardarOsCentavosSemErroDeArredondamento() {
+        Dinheiro soma = Dinheiro.ZERO;
+        for (int i = 0; i < 10; i++) {
+            soma = soma.mais(reais(0.1));
+        }
+
+        assertEquals(reais(1.0), soma);
+        assertEquals(100L, soma.getCentavos());
+    }
+
+    @Test
+    public void deveArredondarParaOCentavoMaisProximo() {
+        assertEquals(1235L, reais("12.345").getCentavos());
+        assertEquals(1234L, reais("12.344").getCentavos());
+        assertEquals(50000L, reais(500.0).getCentavos());
+    }
+
+    @Test
+    public void deveConverterDeVoltaParaReais() {
+        assertEquals(new BigDecimal("1500.50"), Dinheiro.emCentavos(150050).emReais());
+        assertEquals("1500.50", Dinheiro.emCentavos(150050).toString());
+    }
+
+    @Test
+    public void deveCompararPelosCentavos() {
+        assertTrue(reais(10.01).maiorQue(reais(10.0)));
+        assertTrue(reais(9.99).menorQue(reais(10.0)));
+        assertEquals(0, reais(10).compareTo(Dinheiro.emCentavos(1000)));
+    }
+}
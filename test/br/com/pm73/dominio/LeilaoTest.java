@@ -0,0 +1,30 @@
+package br.com.pm73.dominio;
+
+import org.junit.Test;
+
+import java.time.Instant;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class LeilaoTest {
+
+    @Test
+    public void lancesSoEntramPeloAdicionaLance() {
+        Usuario dono = new Usuario("Mauricio", "mauricio@mauricio.com.br");
+        Usuario maria = new Usuario("Maria", "maria@mauricio.com.br");
+        Leilao leilao = new Leilao("Xbox", reais(500.0), dono, false);
+        leilao.adicionaLance(new Lance(Instant.now(), maria, reais(510.0), leilao));
+
+        try {
+            leilao.getLances().add(new Lance(Instant.now(), maria, reais(900.0), leilao));
+            fail("o lance nao atualizaria a quantidade, o maior lance e o vencedor");
+        } catch (UnsupportedOperationException esperado) {
+        }
+
+        assertEquals(1, leilao.getLances().size());
+        assertEquals(1, leilao.getQuantidadeDeLances());
+        assertEquals(reais(510.0), leilao.getMaiorLance());
+    }
+}
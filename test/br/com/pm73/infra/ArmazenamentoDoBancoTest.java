@@ -0,0 +1,167 @@
+package br.com.pm73.infra;
+
+import org.hibernate.HibernateException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArmazenamentoDoBancoTest {
+
+    private File diretorio;
+    private String url;
+    private PoolDeConexoes pool;
+
+    @Before
+    public void antes() throws Exception {
+        diretorio = File.createTempFile("armazenamento", "");
+        diretorio.delete();
+        diretorio.mkdirs();
+        url = "jdbc:hsqldb:file:" + new File(diretorio, "banco").getAbsolutePath();
+
+        Connection conexao = DriverManager.getConnection(url, "sa", "");
+        Statement statement = conexao.createStatement();
+        statement.execute("create memory table leilao(id integer primary key, nome varchar(255))");
+        statement.execute("insert into leilao values (1, 'Geladeira')");
+        statement.execute("shutdown");
+        conexao.close();
+    }
+
+    @After
+    public void depois() throws Exception {
+        if (pool != null) pool.stop();
+        Connection conexao = DriverManager.getConnection(url, "sa", "");
+        conexao.createStatement().execute("shutdown");
+        conexao.close();
+        for (File arquivo : diretorio.listFiles()) {
+            arquivo.delete();
+        }
+        diretorio.delete();
+    }
+
+    @Test
+    public void deveConverterAsTabelasExistentesParaCached() throws SQLException {
+        pool = pool(ArmazenamentoDoBanco.TABELAS, "cached");
+
+        Connection conexao = pool.getConnection();
+        try {
+            assertEquals("CACHED", tipo(conexao, "LEILAO"));
+            ResultSet nome = conexao.createStatement().executeQuery("select nome from leilao where id = 1");
+            assertTrue(nome.next());
+            assertEquals("Geladeira", nome.getString(1));
+        } finally {
+            pool.closeConnection(conexao);
+        }
+    }
+
+    @Test
+    public void deveCriarAsNovasTabelasNoTipoPedido() throws SQLException {
+        pool = pool(ArmazenamentoDoBanco.TABELAS, "cached");
+
+        Connection conexao = pool.getConnection();
+        try {
+            conexao.createStatement().execute("create table lance(id integer primary key)");
+            assertEquals("CACHED", tipo(conexao, "LANCE"));
+        } finally {
+            pool.closeConnection(conexao);
+        }
+    }
+
+    @Test
+    public void deveVoltarParaMemoryQuandoPedido() throws SQLException {
+        Connection conexao = DriverManager.getConnection(url, "sa", "");
+        ArmazenamentoDoBanco emDisco = new ArmazenamentoDoBanco(
+                configuracao(ArmazenamentoDoBanco.TABELAS, "cached"));
+        assertEquals(Arrays.asList("LEILAO"), emDisco.aplica(conexao));
+
+        ArmazenamentoDoBanco noHeap = new ArmazenamentoDoBanco(
+                configuracao(ArmazenamentoDoBanco.TABELAS, "memory"));
+        assertEquals(Arrays.asList("LEILAO"), noHeap.aplica(conexao));
+        assertEquals("MEMORY", tipo(conexao, "LEILAO"));
+        conexao.close();
+    }
+
+    @Test
+    public void deveGravarAsConfiguracoesDeArquivo() throws SQLException {
+        Map<String, String> configuracao = configuracao(ArmazenamentoDoBanco.CACHE_LINHAS, "20000");
+        configuracao.put(ArmazenamentoDoBanco.NIO, "false");
+        configuracao.put(ArmazenamentoDoBanco.DESFRAGMENTA_EM, "25");
+        pool = new PoolDeConexoes();
+        pool.configure(configuracao);
+
+        Connection conexao = pool.getConnection();
+        try {
+            assertEquals("20000", propriedade(conexao, "hsqldb.cache_rows"));
+            assertEquals("false", propriedade(conexao, "hsqldb.nio_data_file"));
+            assertEquals("25", propriedade(conexao, "hsqldb.defrag_limit"));
+            // sem pm73.banco.tabelas o tipo das tabelas nao muda
+            assertEquals("MEMORY", tipo(conexao, "LEILAO"));
+        } finally {
+            pool.closeConnection(conexao);
+        }
+    }
+
+    @Test
+    public void naoDeveMexerEmBancoEmMemoria() throws SQLException {
+        Connection conexao = DriverManager.getConnection("jdbc:hsqldb:mem:armazenamento", "sa", "");
+        try {
+            conexao.createStatement().execute("create memory table item(id integer primary key)");
+            ArmazenamentoDoBanco armazenamento = new ArmazenamentoDoBanco(
+                    configuracao(ArmazenamentoDoBanco.TABELAS, "cached"));
+
+            assertTrue(armazenamento.aplica(conexao).isEmpty());
+            assertEquals("MEMORY", tipo(conexao, "ITEM"));
+        } finally {
+            conexao.createStatement().execute("shutdown");
+            conexao.close();
+        }
+    }
+
+    @Test(expected = HibernateException.class)
+    public void deveRecusarTipoDesconhecido() {
+        new ArmazenamentoDoBanco(configuracao(ArmazenamentoDoBanco.TABELAS, "disco"));
+    }
+
+    private PoolDeConexoes pool(String chave, String valor) {
+        PoolDeConexoes pool = new PoolDeConexoes();
+        pool.configure(configuracao(chave, valor));
+        return pool;
+    }
+
+    private Map<String, String> configuracao(String chave, String valor) {
+        Map<String, String> configuracao = new HashMap<String, String>();
+        configuracao.put("hibernate.connection.driver_class", "org.hsqldb.jdbcDriver");
+        configuracao.put("hibernate.connection.url", url);
+        configuracao.put("hibernate.connection.username", "sa");
+        configuracao.put("hibernate.connection.password", "");
+        configuracao.put("hibernate.connection.pool_size", "2");
+        configuracao.put(chave, valor);
+        return configuracao;
+    }
+
+    private String tipo(Connection conexao, String tabela) throws SQLException {
+        ResultSet tipo = conexao.createStatement().executeQuery("select hsqldb_type"
+                + " from information_schema.system_tables where table_schem = 'PUBLIC' and table_name = '" + tabela + "'");
+        assertTrue(tipo.next());
+        return tipo.getString(1);
+    }
+
+    private String propriedade(Connection conexao, String nome) throws SQLException {
+        ResultSet valor = conexao.createStatement().executeQuery("select property_value"
+                + " from information_schema.system_properties where property_name = '" + nome + "'");
+        assertTrue(valor.next());
+        return valor.getString(1);
+    }
+}
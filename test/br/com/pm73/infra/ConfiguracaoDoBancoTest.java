@@ -0,0 +1,97 @@
+package br.com.pm73.infra;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ConfiguracaoDoBancoTest {
+
+    private final Map<String, String> ambiente = new HashMap<String, String>();
+    private final Properties sistema = new Properties();
+
+    @Test
+    public void producaoNaoDeveImprimirSql() {
+        ConfiguracaoDoBanco configuracao = new ConfiguracaoDoBanco(Perfil.PRODUCAO, ambiente, sistema);
+
+        assertEquals("false", configuracao.get("hibernate.show_sql"));
+        assertEquals("100", configuracao.get("hibernate.jdbc.batch_size"));
+    }
+
+    @Test
+    public void producaoNaoDeveUsarOBancoDosTestes() {
+        String producao = new ConfiguracaoDoBanco(Perfil.PRODUCAO, ambiente, sistema).get("hibernate.connection.url");
+        String teste = new ConfiguracaoDoBanco(Perfil.TESTE, ambiente, sistema).get("hibernate.connection.url");
+
+        assertFalse(producao.replace("file:", "").equals(teste));
+        assertEquals("cached", new ConfiguracaoDoBanco(Perfil.PRODUCAO, ambiente, sistema)
+                .get(ArmazenamentoDoBanco.TABELAS));
+    }
+
+    @Test
+    public void variavelDeAmbienteSobrescrevePerfil() {
+        ambiente.put("HIBERNATE_JDBC_FETCH_SIZE", "42");
+
+        ConfiguracaoDoBanco configuracao = new ConfiguracaoDoBanco(Perfil.MEMORIA, ambiente, sistema);
+
+        assertEquals("42", configuracao.get("hibernate.jdbc.fetch_size"));
+    }
+
+    @Test
+    public void variavelDeAmbienteValeParaChaveQueOPerfilNaoDefine() {
+        ambiente.put("PM73_BANCO_TABELAS", "cached");
+        ambiente.put("HIBERNATE_HBM2DDL_AUTO", "validate");
+
+        ConfiguracaoDoBanco configuracao = new ConfiguracaoDoBanco(Perfil.TESTE, ambiente, sistema);
+
+        assertEquals("cached", configuracao.get(ArmazenamentoDoBanco.TABELAS));
+        assertEquals("validate", configuracao.get("hibernate.hbm2ddl.auto"));
+    }
+
+    @Test
+    public void deveIgnorarVariavelDeAmbienteDesconhecida() {
+        ambiente.put("PM73_POOL_TAMANHO_MAXIMO", "50");
+        ambiente.put("HIBERNATE_HOME", "/opt/hibernate");
+
+        ConfiguracaoDoBanco configuracao = new ConfiguracaoDoBanco(Perfil.TESTE, ambiente, sistema);
+
+        assertEquals(new ConfiguracaoDoBanco(Perfil.TESTE, new HashMap<String, String>(), sistema).getPropriedades(),
+                configuracao.getPropriedades());
+    }
+
+    @Test
+    public void deveIgnorarVariaveisDeOutrosPrefixos() {
+        ambiente.put("PATH", "/usr/bin");
+        ambiente.put("PM73_PERFIL", "producao");
+
+        ConfiguracaoDoBanco configuracao = new ConfiguracaoDoBanco(Perfil.TESTE, ambiente, sistema);
+
+        assertEquals("true", configuracao.get("hibernate.show_sql"));
+    }
+
+    @Test
+    public void propriedadeDeSistemaTemPrioridadeSobreAmbiente() {
+        ambiente.put("HIBERNATE_SHOW_SQL", "false");
+        sistema.setProperty("hibernate.show_sql", "true");
+
+        ConfiguracaoDoBanco configuracao = new ConfiguracaoDoBanco(Perfil.PRODUCAO, ambiente, sistema);
+
+        assertEquals("true", configuracao.get("hibernate.show_sql"));
+    }
+
+    @Test
+    public void deveEscolherPerfilPeloAmbienteQuandoNaoHaPropriedade() {
+        ambiente.put("PM73_PERFIL", "memoria");
+
+        assertEquals(Perfil.MEMORIA, ConfiguracaoDoBanco.perfilAtivo(ambiente, sistema));
+    }
+
+    @Test
+    public void semNadaConfiguradoUsaPerfilDeTeste() {
+        assertEquals(Perfil.TESTE, ConfiguracaoDoBanco.perfilAtivo(ambiente, sistema));
+    }
+}
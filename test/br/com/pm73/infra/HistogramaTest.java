@@ -0,0 +1,56 @@
+package br.com.pm73.infra;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramaTest {
+
+    @Test
+    public void valoresPequenosSaoExatos() {
+        Histograma histograma = new Histograma();
+        for (long i = 1; i <= 10; i++) histograma.registra(i);
+
+        assertEquals(5, histograma.percentil(0.5));
+        assertEquals(10, histograma.percentil(1.0));
+        assertEquals(5.5, histograma.getMedia(), 0.0001);
+    }
+
+    @Test
+    public void percentisFicamDentroDoErroRelativo() {
+        Histograma histograma = new Histograma();
+        for (long i = 1; i <= 1000000; i++) histograma.registra(i * 1000);
+
+        assertPerto(500000000L, histograma.percentil(0.50));
+        assertPerto(990000000L, histograma.percentil(0.99));
+        assertPerto(999000000L, histograma.percentil(0.999));
+        assertEquals(1000000000L, histograma.getMaximo());
+        assertEquals(1000000, histograma.getQuantidade());
+    }
+
+    @Test
+    public void cadaValorCaiNumaFaixaQueOContem() {
+        for (long valor = 0; valor < 100000; valor += 7) {
+            assertTrue(Histograma.limiteSuperior(Histograma.faixa(valor)) >= valor);
+        }
+        long grande = Long.MAX_VALUE / 3;
+        assertTrue(Histograma.limiteSuperior(Histograma.faixa(grande)) >= grande);
+    }
+
+    @Test
+    public void zeraDescartaTudo() {
+        Histograma histograma = new Histograma();
+        histograma.registra(42);
+        histograma.zera();
+
+        assertEquals(0, histograma.getQuantidade());
+        assertEquals(0, histograma.percentil(0.99));
+        assertEquals(0, histograma.getMaximo());
+    }
+
+    private void assertPerto(long esperado, long obtido) {
+        assertTrue(obtido + " nao esta perto de " + esperado,
+                obtido >= esperado && obtido <= esperado * (1 + 1.0 / Histograma.SUBFAIXAS));
+    }
+}
@@ -0,0 +1,118 @@
+package br.com.pm73.infra;
+
+import br.com.pm73.dao.CriadorDeSessao;
+import br.com.pm73.dao.LeilaoDao;
+import br.com.pm73.dao.UsuarioDao;
+import br.com.pm73.dominio.Leilao;
+import br.com.pm73.dominio.Usuario;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InstrumentacaoTest {
+    private Session session;
+    private LeilaoDao leilaoDao;
+    private UsuarioDao usuarioDao;
+    private Usuario mauricio;
+
+    @Before
+    public void antes() {
+        session = new CriadorDeSessao().getSession();
+        leilaoDao = Instrumentacao.instrumenta(LeilaoDao.class, session);
+        usuarioDao = Instrumentacao.instrumenta(UsuarioDao.class, session);
+        session.beginTransaction();
+
+        mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
+        usuarioDao.salvar(mauricio);
+        for (int i = 0; i < 3; i++) {
+            leilaoDao.salvar(new Leilao("Leilao " + i, reais(100.0), mauricio, false));
+        }
+        session.flush();
+        session.clear();
+        Instrumentacao.zera();
+    }
+
+    @After
+    public void depois() {
+        session.getTransaction().rollback();
+        session.close();
+    }
+
+    @Test
+    public void deveMedirChamadasStatementsLinhasEEntidades() {
+        int total = leilaoDao.novos().size();
+        leilaoDao.novos();
+
+        MetricasDoMetodo novos = Instrumentacao.getMetricas("LeilaoDao.novos()");
+        assertEquals(2, novos.getChamadas());
+        assertEquals(0, novos.getErros());
+        assertEquals(2, novos.getStatements());
+        assertEquals(2 * total, novos.getLinhas());
+        // a segunda chamada encontra as entidades ja na sessao
+        assertEquals(total, novos.getEntidades());
+        assertTrue(novos.getP99EmMicros() >= novos.getP50EmMicros());
+        assertTrue(novos.getP50EmMicros() > 0);
+    }
+
+    @Test
+    public void sobrecargasSaoMedidasSeparadamente() {
+        leilaoDao.novos(0, 2);
+
+        assertEquals(1, chamadas("LeilaoDao.novos(int, int)"));
+        assertEquals(0, chamadas("LeilaoDao.novos()"));
+    }
+
+    @Test
+    public void excecoesContamComoErroESaoRepassadas() {
+        try {
+            leilaoDao.renomeia(new Leilao("Fantasma", reais(1.0), mauricio, false), "Outro");
+            fail("o leilao nao existe");
+        } catch (RuntimeException esperado) {
+        }
+
+        MetricasDoMetodo renomeia = Instrumentacao.getMetricas("LeilaoDao.renomeia(Leilao, String)");
+        assertEquals(1, renomeia.getChamadas());
+        assertEquals(1, renomeia.getErros());
+    }
+
+    @Test
+    public void retratoEJmxMostramOsMetodos() throws Exception {
+        usuarioDao.porNomeEEmail("Mauricio", "mauricio@mauricio.com.br");
+
+        assertTrue(Instrumentacao.retrato().contains("UsuarioDao.porNomeEEmail(String, String)"));
+        assertTrue(Instrumentacao.retrato().startsWith("hibernate: "));
+
+        Object retrato = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName(Instrumentacao.NOME_NO_JMX), "Retrato");
+        assertTrue(((String) retrato).contains("UsuarioDao.porNomeEEmail(String, String)"));
+        Object metodos = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName(Instrumentacao.NOME_NO_JMX), "Metodos");
+        assertTrue(((Object[]) metodos).length > 0);
+    }
+
+    @Test
+    public void metricasVemOrdenadasPeloTempoTotal() {
+        leilaoDao.novos();
+        usuarioDao.porNomeEEmail("Mauricio", "mauricio@mauricio.com.br");
+
+        List<MetricasDoMetodo> metricas = Instrumentacao.getMetricas();
+        for (int i = 1; i < metricas.size(); i++) {
+            assertTrue(metricas.get(i - 1).getTempoTotalEmMillis() >= metricas.get(i).getTempoTotalEmMillis());
+        }
+    }
+
+    private long chamadas(String metodo) {
+        MetricasDoMetodo metricas = Instrumentacao.getMetricas(metodo);
+        return metricas == null ? 0 : metricas.getChamadas();
+    }
+}
@@ -0,0 +1,166 @@
+package br.com.pm73.infra;
+
+import br.com.pm73.dao.CriadorDeSessao;
+import br.com.pm73.dao.LeilaoDao;
+import br.com.pm73.dao.UsuarioDao;
+import br.com.pm73.dominio.Leilao;
+import br.com.pm73.dominio.Usuario;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LogDeConsultasLentasTest {
+    private Session session;
+    private LeilaoDao leilaoDao;
+    private LogDeConsultasLentas consultasLentas;
+    private long limiteOriginal;
+    private final List<String> mensagens = new ArrayList<String>();
+    private final Handler captura = new Handler() {
+        public void publish(LogRecord registro) { mensagens.add(registro.getMessage()); }
+        public void flush() { }
+        public void close() { }
+    };
+
+    @Before
+    public void antes() {
+        session = new CriadorDeSessao().getSession();
+        leilaoDao = new LeilaoDao(session);
+        session.beginTransaction();
+
+        Usuario mauricio = new Usuario("Mauricio", "mauricio@mauricio.com.br");
+        new UsuarioDao(session).salvar(mauricio);
+        leilaoDao.salvar(new Leilao("Xbox", reais(100.0), mauricio, false));
+        session.flush();
+
+        consultasLentas = CriadorDeSessao.getConsultasLentas();
+        limiteOriginal = consultasLentas.getLimiteEmMillis();
+        Logger.getLogger(LogDeConsultasLentas.class.getName()).addHandler(captura);
+    }
+
+    @After
+    public void depois() {
+        consultasLentas.setLimiteEmMillis(limiteOriginal);
+        Logger.getLogger(LogDeConsultasLentas.class.getName()).removeHandler(captura);
+        session.getTransaction().rollback();
+        session.close();
+    }
+
+    @Test
+    public void deveRegistrarParametrosLinhasEPlano() throws Exception {
+        consultasLentas.setLimiteEmMillis(0);
+        leilaoDao.porPeriodo(Instant.EPOCH, Instant.now());
+        consultasLentas.esperaPendentes(10000);
+
+        String mensagem = mensagemCom("dataabertura between");
+        assertTrue(mensagem, mensagem.startsWith("consulta lenta: "));
+        assertTrue(mensagem, mensagem.contains("parametros [0, "));
+        assertTrue(mensagem, mensagem.contains("acesso: LEILAO: "));
+
+        ConsultaLenta consulta = consultaCom("dataabertura between");
+        assertTrue(consulta.getPlano(), consulta.getPlano().contains("access="));
+        assertTrue(consulta.getMaiorQuantidadeDeLinhas() >= 1);
+    }
+
+    @Test
+    public void planoSaiUmaVezPorFormato() throws Exception {
+        consultasLentas.setLimiteEmMillis(0);
+        leilaoDao.disputadosEntre(reais(10), reais(20));
+        leilaoDao.disputadosEntre(reais(30), reais(40));
+        consultasLentas.esperaPendentes(10000);
+
+        ConsultaLenta consulta = consultaCom("quantidadedelances");
+        List<String> doFormato = new ArrayList<String>();
+        for (String mensagem : mensagens) {
+            if (mensagem.contains("formato " + consulta.getId())) doFormato.add(mensagem);
+        }
+        assertTrue(consulta.getOcorrencias() >= 2);
+        assertEquals(2, doFormato.size());
+        assertEquals(doFormato.get(0).contains("access="), !doFormato.get(1).contains("access="));
+    }
+
+    @Test
+    public void abaixoDoLimiteNadaERegistrado() throws Exception {
+        consultasLentas.setLimiteEmMillis(60000);
+        leilaoDao.novos();
+        consultasLentas.esperaPendentes(10000);
+
+        assertTrue(mensagens.isEmpty());
+    }
+
+    @Test
+    public void limiteNegativoDesligaOLog() throws Exception {
+        consultasLentas.setLimiteEmMillis(-1);
+        leilaoDao.novos();
+        consultasLentas.esperaPendentes(10000);
+
+        assertTrue(mensagens.isEmpty());
+        assertEquals(-1, consultasLentas.getLimiteEmMillis());
+    }
+
+    @Test
+    public void formatoIgnoraLiteraisEListasDoIn() {
+        String um = LogDeConsultasLentas.formato("select *  from Leilao where id in (1, 2, 3) and nome = 'Xbox'");
+        String outro = LogDeConsultasLentas.formato("select * from Leilao\n where id in (?, ?) and nome = 'It''s'");
+
+        assertEquals("select * from leilao where id in (?...) and nome = ?", um);
+        assertEquals(um, outro);
+        assertFalse(LogDeConsultasLentas.formato("select leilao0_.id from Leilao leilao0_").contains("?"));
+    }
+
+    @Test
+    public void depoisDoLimiteDeFormatosNaoRodaMaisExplain() throws Exception {
+        Map<String, String> configuracao = new HashMap<String, String>();
+        configuracao.put("hibernate.connection.driver_class", "org.hsqldb.jdbcDriver");
+        configuracao.put("hibernate.connection.url", "jdbc:hsqldb:mem:formatos");
+        configuracao.put("hibernate.connection.username", "sa");
+        configuracao.put("hibernate.connection.password", "");
+        PoolDeConexoes pool = new PoolDeConexoes();
+        pool.configure(configuracao);
+        LogDeConsultasLentas log = new LogDeConsultasLentas(pool, 0, 1);
+        try {
+            long emprestimos = pool.getEstatisticas().getEmprestimos();
+            log.registra("select * from information_schema.system_users where user_name = 'SA'", "[]", 1000, 1);
+            log.registra("select * from information_schema.system_tables where table_name = 'X'", "[]", 1000, 0);
+            log.registra("select * from information_schema.system_tables where table_name = 'Y'", "[]", 1000, 0);
+            log.esperaPendentes(10000);
+
+            assertEquals(1, log.getConsultas().size());
+            assertEquals(2, log.getSemPlano());
+            // so o primeiro formato pediu conexao para o EXPLAIN
+            assertEquals(emprestimos + 1, pool.getEstatisticas().getEmprestimos());
+            assertTrue(mensagemCom("table_name = 'y'").contains("sem plano (limite de 1 formatos)"));
+        } finally {
+            log.para();
+            pool.stop();
+        }
+    }
+
+    private String mensagemCom(String trecho) {
+        for (String mensagem : mensagens) {
+            if (mensagem.toLowerCase().contains(trecho)) return mensagem;
+        }
+        throw new AssertionError("nada com " + trecho + " em " + mensagens);
+    }
+
+    private ConsultaLenta consultaCom(String trecho) {
+        for (ConsultaLenta consulta : consultasLentas.getConsultas()) {
+            if (consulta.getFormato().contains(trecho)) return consulta;
+        }
+        throw new AssertionError("nenhum formato com " + trecho);
+    }
+}
@@ -0,0 +1,127 @@
+package br.com.pm73.infra;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PoolDeConexoesTest {
+
+    private PoolDeConexoes pool;
+
+    @Before
+    public void antes() {
+        Map<String, String> configuracao = new HashMap<String, String>();
+        configuracao.put("hibernate.connection.driver_class", "org.hsqldb.jdbcDriver");
+        configuracao.put("hibernate.connection.url", "jdbc:hsqldb:mem:pooltest");
+        configuracao.put("hibernate.connection.username", "sa");
+        configuracao.put("hibernate.connection.password", "");
+        configuracao.put("hibernate.connection.pool_size", "2");
+        configuracao.put(PoolDeConexoes.TIMEOUT, "100");
+
+        pool = new PoolDeConexoes();
+        pool.configure(configuracao);
+    }
+
+    @After
+    public void depois() {
+        pool.stop();
+    }
+
+    @Test
+    public void deveReaproveitarConexaoDevolvida() throws SQLException {
+        Connection primeira = pool.getConnection();
+        pool.closeConnection(primeira);
+
+        Connection segunda = pool.getConnection();
+
+        assertSame(primeira, segunda);
+        assertEquals(1, pool.getEstatisticas().getConexoesCriadas());
+        assertEquals(1, pool.getEstatisticas().getEmUso());
+    }
+
+    @Test
+    public void naoDeveEmprestarMaisQueOTamanhoMaximo() throws SQLException {
+        Connection primeira = pool.getConnection();
+        pool.getConnection();
+
+        try {
+            pool.getConnection();
+            fail("o pool deveria estar esgotado");
+        } catch (SQLException esperado) {
+            // pool esgotado
+        }
+
+        assertEquals(1, pool.getEstatisticas().getEsperasComTimeout());
+
+        pool.closeConnection(primeira);
+        Connection terceira = pool.getConnection();
+
+        assertSame(primeira, terceira);
+        assertEquals(2, pool.getEstatisticas().getEmUso());
+    }
+
+    @Test
+    public void deveDescartarConexaoFechadaPorFora() throws SQLException {
+        Connection conexao = pool.getConnection();
+        conexao.close();
+        pool.closeConnection(conexao);
+
+        Connection nova = pool.getConnection();
+
+        assertTrue(nova != conexao);
+        assertEquals(1, pool.getEstatisticas().getConexoesDescartadas());
+    }
+
+    @Test
+    public void deveDesfazerTransacaoPendenteAoDevolverConexao() throws SQLException {
+        Connection conexao = pool.getConnection();
+        conexao.createStatement().execute("create table item(id integer primary key)");
+        conexao.commit();
+        conexao.createStatement().execute("insert into item values (1)");
+        pool.closeConnection(conexao);
+
+        Connection seguinte = pool.getConnection();
+        try {
+            ResultSet itens = seguinte.createStatement().executeQuery("select count(*) from item");
+            itens.next();
+
+            assertEquals(0, itens.getInt(1));
+        } finally {
+            pool.closeConnection(seguinte);
+        }
+    }
+
+    @Test
+    public void deveDesligarOBancoAoParar() throws SQLException {
+        Connection conexao = pool.getConnection();
+        conexao.createStatement().execute("create table item(id integer primary key)");
+        conexao.commit();
+        pool.closeConnection(conexao);
+
+        pool.stop();
+
+        // depois do SHUTDOWN o banco mem: volta vazio
+        Connection nova = DriverManager.getConnection("jdbc:hsqldb:mem:pooltest", "sa", "");
+        try {
+            ResultSet tabelas = nova.createStatement().executeQuery("select count(*)"
+                    + " from information_schema.system_tables where table_schem = 'PUBLIC'");
+            tabelas.next();
+            assertEquals(0, tabelas.getInt(1));
+        } finally {
+            nova.createStatement().execute("shutdown");
+            nova.close();
+        }
+    }
+}
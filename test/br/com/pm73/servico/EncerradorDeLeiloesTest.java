@@ -0,0 +1,130 @@
+package br.com.pm73.servico;
+
+import br.com.pm73.dao.CriadorDeSessao;
+import br.com.pm73.dao.LeilaoDao;
+import br.com.pm73.dao.UsuarioDao;
+import br.com.pm73.dominio.Leilao;
+import br.com.pm73.dominio.Usuario;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * O encerrador confirma uma transacao por lote, entao os leiloes sao
+ * gravados de verdade e o @After apaga o que foi gravado.
+ */
+public class EncerradorDeLeiloesTest {
+
+    private Usuario dono;
+    private List<Leilao> vencidos;
+    private Leilao recente;
+
+    @Before
+    public void antes() {
+        Session session = new CriadorDeSessao().getSession();
+        session.beginTransaction();
+        dono = new Usuario("Dono", "dono@encerrador.com.br");
+        new UsuarioDao(session).salvar(dono);
+        LeilaoDao leilaoDao = new LeilaoDao(session);
+
+        vencidos = new ArrayList<Leilao>();
+        for (int i = 0; i < 5; i++) {
+            Leilao leilao = new Leilao("Vencido " + i, reais(100.0), dono, false);
+            leilao.setDataAbertura(Instant.now().minus(10, ChronoUnit.DAYS));
+            leilaoDao.salvar(leilao);
+            vencidos.add(leilao);
+        }
+        recente = new Leilao("Recente", reais(100.0), dono, false);
+        recente.setDataAbertura(Instant.now().minus(2, ChronoUnit.DAYS));
+        leilaoDao.salvar(recente);
+        session.getTransaction().commit();
+        session.close();
+    }
+
+    @After
+    public void depois() {
+        Session session = new CriadorDeSessao().getSession();
+        session.beginTransaction();
+        session.createQuery("delete from Leilao l where l.dono.id = :dono")
+                .setParameter("dono", dono.getId()).executeUpdate();
+        session.createQuery("delete from Usuario u where u.id = :dono")
+                .setParameter("dono", dono.getId()).executeUpdate();
+        session.getTransaction().commit();
+        session.close();
+    }
+
+    @Test
+    public void deveEncerrarSoOsVencidosEmLotes() {
+        EncerradorDeLeiloes encerrador = new EncerradorDeLeiloes(new CriadorDeSessao(), Duration.ofDays(7), 2);
+
+        ResultadoDoEncerramento resultado = encerrador.encerraVencidos();
+
+        assertEquals(5, resultado.getLeiloes());
+        assertEquals(3, resultado.getLotes());
+        for (Leilao vencido : vencidos) {
+            Leilao encerrado = porId(vencido.getId());
+            assertTrue(encerrado.isEncerrado());
+        }
+        assertFalse(porId(recente.getId()).isEncerrado());
+    }
+
+    @Test
+    public void rodarDeNovoNaoEncerraDeNovo() {
+        EncerradorDeLeiloes encerrador = new EncerradorDeLeiloes(new CriadorDeSessao(), Duration.ofDays(7), 2);
+        encerrador.encerraVencidos();
+
+        ResultadoDoEncerramento segunda = encerrador.encerraVencidos();
+
+        assertEquals(0, segunda.getLeiloes());
+        assertEquals(5, encerrador.getEncerrados());
+        assertEquals(2, encerrador.getExecucoes());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void lanceEmLeilaoEncerradoPeloJobERecusado() {
+        new EncerradorDeLeiloes(new CriadorDeSessao(), Duration.ofDays(7), 100).encerraVencidos();
+
+        new ServicoDeLances().daLance(vencidos.get(0).getId(), dono.getId(), reais(200.0));
+    }
+
+    @Test
+    public void deveRodarAgendado() throws Exception {
+        EncerradorDeLeiloes encerrador = new EncerradorDeLeiloes(new CriadorDeSessao(), Duration.ofDays(7), 100);
+
+        encerrador.agenda(50, TimeUnit.MILLISECONDS);
+        try {
+            long limite = System.currentTimeMillis() + 10000;
+            while (encerrador.getExecucoes() < 2 && System.currentTimeMillis() < limite) {
+                Thread.sleep(20);
+            }
+        } finally {
+            encerrador.para();
+        }
+
+        assertTrue(encerrador.getExecucoes() >= 2);
+        assertEquals(5, encerrador.getEncerrados());
+        assertEquals(0, encerrador.getFalhas());
+    }
+
+    private Leilao porId(int id) {
+        Session session = new CriadorDeSessao().getSession();
+        try {
+            return new LeilaoDao(session).porId(id);
+        } finally {
+            session.close();
+        }
+    }
+}
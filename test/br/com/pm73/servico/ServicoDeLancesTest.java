@@ -0,0 +1,189 @@
+package br.com.pm73.servico;
+
+import br.com.pm73.dao.CriadorDeSessao;
+import br.com.pm73.dao.LeilaoDao;
+import br.com.pm73.dao.UsuarioDao;
+import br.com.pm73.dominio.Dinheiro;
+import br.com.pm73.dominio.Lance;
+import br.com.pm73.dominio.Leilao;
+import br.com.pm73.dominio.Usuario;
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static br.com.pm73.dominio.Dinheiro.reais;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Os lances sao confirmados de verdade, cada um na sua transacao, entao o
+ * @After apaga o que foi gravado.
+ */
+public class ServicoDeLancesTest {
+
+    private static final int LICITANTES = 1000;
+    private static final int LEILOES = 4;
+    private static final int THREADS = 16;
+    private static final int LANCES = 4000;
+
+    private Usuario dono;
+    private List<Usuario> licitantes;
+    private List<Leilao> leiloes;
+    private ServicoDeLances servico;
+
+    @Before
+    public void antes() {
+        Session session = new CriadorDeSessao().getSession();
+        session.beginTransaction();
+        UsuarioDao usuarioDao = new UsuarioDao(session);
+        dono = new Usuario("Dono", "dono@concorrencia.com.br");
+        usuarioDao.salvar(dono);
+        licitantes = new ArrayList<Usuario>();
+        for (int i = 0; i < LICITANTES; i++) {
+            Usuario licitante = new Usuario("Licitante " + i, "licitante" + i + "@concorrencia.com.br");
+            usuarioDao.salvar(licitante);
+            licitantes.add(licitante);
+        }
+        leiloes = new ArrayList<Leilao>();
+        for (int i = 0; i < LEILOES; i++) {
+            Leilao leilao = new Leilao("Leilao " + i, reais(100.0), dono, false);
+            new LeilaoDao(session).salvar(leilao);
+            leiloes.add(leilao);
+        }
+        session.getTransaction().commit();
+        session.close();
+
+        servico = new ServicoDeLances();
+    }
+
+    @After
+    public void depois() {
+        Session session = new CriadorDeSessao().getSession();
+        session.beginTransaction();
+        session.createQuery("delete from Lance lance where lance.leilao.id in " +
+                "(select l.id from Leilao l where l.dono.id = :dono)")
+                .setParameter("dono", dono.getId()).executeUpdate();
+        session.createQuery("delete from Leilao l where l.dono.id = :dono")
+                .setParameter("dono", dono.getId()).executeUpdate();
+        session.createQuery("delete from Usuario u where u.email like '%@concorrencia.com.br'")
+                .executeUpdate();
+        session.getTransaction().commit();
+        session.close();
+    }
+
+    @Test
+    public void deveRecusarLanceQueNaoSuperaOMaiorLance() {
+        int leilao = leiloes.get(0).getId();
+        servico.daLance(leilao, licitantes.get(0).getId(), reais(150.0));
+
+        try {
+            servico.daLance(leilao, licitantes.get(1).getId(), reais(150.0));
+            fail();
+        } catch (IllegalArgumentException esperado) {
+        }
+        try {
+            servico.daLance(leiloes.get(1).getId(), licitantes.get(1).getId(), reais(99.99));
+            fail();
+        } catch (IllegalArgumentException esperado) {
+        }
+
+        assertEquals(1, servico.getEstatisticas().getAceitos());
+        assertEquals(2, servico.getEstatisticas().getRecusados());
+    }
+
+    @Test
+    public void deveRecusarLanceEmLeilaoEncerrado() {
+        Session session = new CriadorDeSessao().getSession();
+        session.beginTransaction();
+        Leilao leilao = new LeilaoDao(session).porId(leiloes.get(0).getId());
+        leilao.encerra();
+        session.getTransaction().commit();
+        session.close();
+
+        try {
+            servico.daLance(leilao.getId(), licitantes.get(0).getId(), reais(150.0));
+            fail();
+        } catch (IllegalStateException esperado) {
+        }
+    }
+
+    @Test
+    public void lancesConcorrentesNaoSePerdem() throws Exception {
+        final AtomicLong[] proximoValor = new AtomicLong[LEILOES];
+        final AtomicLong[] aceitos = new AtomicLong[LEILOES];
+        for (int i = 0; i < LEILOES; i++) {
+            proximoValor[i] = new AtomicLong(reais(100.0).getCentavos());
+            aceitos[i] = new AtomicLong();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        // as threads saem juntas a cada rodada de THREADS lances (LANCES e multiplo de THREADS),
+        // todas nos mesmos LEILOES, para garantir conflitos
+        final CyclicBarrier largada = new CyclicBarrier(THREADS);
+        List<Future<Void>> resultados = new ArrayList<Future<Void>>();
+        for (int i = 0; i < LANCES; i++) {
+            resultados.add(executor.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    largada.await();
+                    int indice = ThreadLocalRandom.current().nextInt(LEILOES);
+                    Usuario licitante = licitantes.get(ThreadLocalRandom.current().nextInt(LICITANTES));
+                    Dinheiro valor = Dinheiro.emCentavos(proximoValor[indice].addAndGet(100));
+                    try {
+                        servico.daLance(leiloes.get(indice).getId(), licitante.getId(), valor);
+                        aceitos[indice].incrementAndGet();
+                    } catch (IllegalArgumentException chegouDepoisDeUmMaior) {
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> resultado : resultados) {
+            resultado.get();
+        }
+        executor.shutdown();
+
+        EstatisticasDeLances estatisticas = servico.getEstatisticas();
+        assertEquals(LANCES, estatisticas.getAceitos() + estatisticas.getRecusados());
+        assertEquals(0, estatisticas.getDesistencias());
+        assertTrue(estatisticas.getAceitos() > 0);
+
+        Session session = new CriadorDeSessao().getSession();
+        try {
+            for (int i = 0; i < LEILOES; i++) {
+                Leilao leilao = (Leilao) session.get(Leilao.class, leiloes.get(i).getId());
+                long gravados = (Long) session.createQuery("select count(lance) from Lance lance " +
+                        "where lance.leilao = :leilao").setParameter("leilao", leilao).uniqueResult();
+                Lance maior = (Lance) session.createQuery("from Lance lance where lance.leilao = :leilao " +
+                        "order by lance.valor desc").setParameter("leilao", leilao)
+                        .setMaxResults(1).uniqueResult();
+
+                assertEquals(aceitos[i].get(), gravados);
+                assertEquals(gravados, leilao.getQuantidadeDeLances());
+                if (maior != null) {
+                    assertEquals(maior.getValor(), leilao.getMaiorLance());
+                    assertEquals(maior.getUsuario().getId(), leilao.getVencedor().getId());
+                }
+            }
+        } finally {
+            session.close();
+        }
+
+        // sem desistencias, todo conflito virou uma nova tentativa, dentro do limite
+        assertTrue(estatisticas.getConflitos() > 0);
+        assertEquals(estatisticas.getConflitos(), estatisticas.getRetentativas());
+        assertTrue(estatisticas.getMaiorNumeroDeTentativas() > 1);
+        assertTrue(estatisticas.getMaiorNumeroDeTentativas() <= ServicoDeLances.TENTATIVAS_PADRAO);
+    }
+}